@@ -20,6 +20,8 @@
 package ru.touchin.roboswag.components.navigation;
 
 import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 
 import java.io.Serializable;
@@ -34,6 +36,9 @@ import java.io.Serializable;
  * 2) if you want to modify such object then you should pass it's fragment as {@link Fragment#getTargetFragment()};
  * 3) if you are using {@link ViewControllerNavigation} then just use ***ForResult methods to pass target;
  * 4) as it is serializable object then all initialization logic (like binding) should NOT be in constructor. Use {@link #onCreate()} method.
+ * If state is big then implement {@link android.os.Parcelable} (with CREATOR field) in it's class - it will be saved via {@link StateSerializer}
+ * as parcelable which is much faster and smaller than Java serialization. Use {@link StateSerializer#benchmark(AbstractState, int)} to compare.
+ * If state is saving often but changing rarely then override {@link #isDirtyTrackingEnabled()} and call {@link #markDirty()} on every change.
  */
 @SuppressWarnings("PMD.AbstractClassWithoutAbstractMethod")
 //AbstractClassWithoutAbstractMethod: objects of this class actually shouldn't exist
@@ -41,6 +46,10 @@ public abstract class AbstractState implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    private transient boolean clean;
+    @Nullable
+    private transient byte[] snapshot;
+
     /**
      * Calls right after construction. All inner object's instantiation logic should be in this method.
      * Do NOT do some instantiation logic in constructor except fields setup.
@@ -49,4 +58,42 @@ public abstract class AbstractState implements Serializable {
         // do nothing
     }
 
+    /**
+     * Returns if state is tracking it's changes by {@link #markDirty()} calls.
+     * If it is true then serialized form of state is cached and reused by {@link StateSerializer#putSnapshot} until {@link #markDirty()} called.
+     * So every change of such state MUST be followed by {@link #markDirty()} call or else outdated state will be saved.
+     *
+     * @return True if state is tracking it's changes. False by default.
+     */
+    protected boolean isDirtyTrackingEnabled() {
+        return false;
+    }
+
+    /**
+     * Marks that state have changed since last save so it should be serialized again.
+     */
+    public void markDirty() {
+        clean = false;
+        snapshot = null;
+    }
+
+    /**
+     * Returns if state have changed since last save. It is always true if {@link #isDirtyTrackingEnabled()} is false.
+     *
+     * @return True if state should be serialized again.
+     */
+    public boolean isDirty() {
+        return !isDirtyTrackingEnabled() || !clean;
+    }
+
+    @Nullable
+    byte[] getSnapshot() {
+        return isDirty() ? null : snapshot;
+    }
+
+    void setSnapshot(@NonNull final byte[] snapshot) {
+        this.snapshot = snapshot;
+        clean = true;
+    }
+
 }
@@ -0,0 +1,268 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.navigation;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.FragmentManager;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Structured index of {@link FragmentManager}'s back stack which is kept in sync via {@link FragmentManager.OnBackStackChangedListener}.
+ * Every entry is described by {@link Entry} (without bread crumbs) with ID, class of fragment and TOP/TARGET flags
+ * which are parsed once when entry is added, also index of nearest top entry is precomputed for every position so {@link FragmentNavigation#up()} and
+ * {@link FragmentNavigation#isCurrentFragmentTop()} are not parsing names and not scanning stack.
+ * If index is not matching back stack (e.g. after process restoration) then it is rebuilding from names of entries.
+ */
+public class BackStackIndex implements FragmentManager.OnBackStackChangedListener {
+
+    private static final int NO_INDEX = -1;
+
+    @NonNull
+    private final FragmentManager fragmentManager;
+    @NonNull
+    private final ArrayList<Entry> entries = new ArrayList<>();
+    @NonNull
+    private final SparseArray<Entry> pendingEntries = new SparseArray<>();
+    @NonNull
+    private int[] nearestTopIndexes = new int[8];
+
+    public BackStackIndex(@NonNull final FragmentManager fragmentManager) {
+        this.fragmentManager = fragmentManager;
+    }
+
+    /**
+     * Registers entry which is committing to back stack so it's info will be taken from here instead of parsing it's name.
+     *
+     * @param id                Id of entry returned by {@link android.support.v4.app.FragmentTransaction#commit()};
+     * @param fragmentClassName Class name of fragment of entry;
+     * @param name              Name of entry.
+     */
+    public void onEntryCommitted(final int id, @NonNull final String fragmentClassName, @Nullable final String name) {
+        pendingEntries.put(id, new Entry(id, fragmentClassName, name));
+    }
+
+    @Override
+    public void onBackStackChanged() {
+        sync();
+    }
+
+    /**
+     * Returns entries of back stack from bottom to top.
+     *
+     * @return List of entries.
+     */
+    @NonNull
+    public List<Entry> getEntries() {
+        ensureSynced();
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Returns top entry of back stack.
+     *
+     * @return Top entry or null if back stack is empty.
+     */
+    @Nullable
+    public Entry getTopEntry() {
+        ensureSynced();
+        return entries.isEmpty() ? null : entries.get(entries.size() - 1);
+    }
+
+    /**
+     * Returns position of nearest entry with {@link FragmentNavigation#TOP_FRAGMENT_TAG_MARK} at specific position or below.
+     *
+     * @param position Position in back stack to search from;
+     * @return Position of top entry or -1 if there is no such entry.
+     */
+    public int getNearestTopPosition(final int position) {
+        ensureSynced();
+        return position >= 0 && position < entries.size() ? nearestTopIndexes[position] : NO_INDEX;
+    }
+
+    private void ensureSynced() {
+        if (entries.size() != fragmentManager.getBackStackEntryCount()) {
+            sync();
+        }
+    }
+
+    private void sync() {
+        final int count = fragmentManager.getBackStackEntryCount();
+        int matched = 0;
+        while (matched < count && matched < entries.size()) {
+            final FragmentManager.BackStackEntry backStackEntry = fragmentManager.getBackStackEntryAt(matched);
+            final Entry entry = entries.get(matched);
+            // ids of FragmentManager's entries could be reused so names are also compared
+            if (backStackEntry.getId() != entry.id || !equals(backStackEntry.getName(), entry.name)) {
+                break;
+            }
+            matched++;
+        }
+        while (entries.size() > matched) {
+            entries.remove(entries.size() - 1);
+        }
+        if (nearestTopIndexes.length < count) {
+            final int[] newNearestTopIndexes = new int[Math.max(count, nearestTopIndexes.length * 2)];
+            System.arraycopy(nearestTopIndexes, 0, newNearestTopIndexes, 0, matched);
+            nearestTopIndexes = newNearestTopIndexes;
+        }
+        for (int i = matched; i < count; i++) {
+            final FragmentManager.BackStackEntry backStackEntry = fragmentManager.getBackStackEntryAt(i);
+            Entry entry = pendingEntries.get(backStackEntry.getId());
+            if (entry == null || !equals(entry.name, backStackEntry.getName())) {
+                entry = new Entry(backStackEntry.getId(), parseFragmentClassName(backStackEntry.getName()), backStackEntry.getName());
+            }
+            pendingEntries.remove(backStackEntry.getId());
+            entries.add(entry);
+            nearestTopIndexes[i] = entry.top ? i : (i > 0 ? nearestTopIndexes[i - 1] : NO_INDEX);
+        }
+    }
+
+    private static boolean equals(@Nullable final String first, @Nullable final String second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    @NonNull
+    private static String parseFragmentClassName(@Nullable final String name) {
+        if (name == null) {
+            return "";
+        }
+        for (int i = 0; i < name.length(); i++) {
+            final char character = name.charAt(i);
+            if (character == ';' || character == ' ') {
+                return name.substring(0, i);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Entry of {@link BackStackIndex} which is describing {@link FragmentManager.BackStackEntry}.
+     */
+    public static class Entry implements FragmentManager.BackStackEntry {
+
+        private final int id;
+        @NonNull
+        private final String fragmentClassName;
+        @Nullable
+        private final String name;
+        private final boolean top;
+        private final boolean topMark;
+        private final boolean withTarget;
+
+        public Entry(final int id, @NonNull final String fragmentClassName, @Nullable final String name) {
+            this.id = id;
+            this.fragmentClassName = fragmentClassName;
+            this.name = name;
+            this.top = name != null && name.endsWith(FragmentNavigation.TOP_FRAGMENT_TAG_MARK);
+            this.topMark = name != null && name.contains(FragmentNavigation.TOP_FRAGMENT_TAG_MARK);
+            this.withTarget = name != null && name.endsWith(FragmentNavigation.WITH_TARGET_FRAGMENT_TAG_MARK);
+        }
+
+        /**
+         * Returns ID of {@link FragmentManager.BackStackEntry}.
+         *
+         * @return ID of entry.
+         */
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Returns class name of fragment of entry.
+         *
+         * @return Class name of fragment.
+         */
+        @NonNull
+        public String getFragmentClassName() {
+            return fragmentClassName;
+        }
+
+        /**
+         * Returns name of {@link FragmentManager.BackStackEntry}.
+         *
+         * @return Name of entry.
+         */
+        @Nullable
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns if entry is added as top (by setAsTop or setInitial).
+         *
+         * @return True if entry is top.
+         */
+        public boolean isTop() {
+            return top;
+        }
+
+        /**
+         * Returns if name of entry is containing {@link FragmentNavigation#TOP_FRAGMENT_TAG_MARK} anywhere
+         * (not only at the end like {@link #isTop()}).
+         * It is used by {@link FragmentNavigation#isCurrentFragmentTop()} so entries with custom names of subclasses are treated as before.
+         *
+         * @return True if name of entry is containing top mark.
+         */
+        public boolean hasTopMark() {
+            return topMark;
+        }
+
+        /**
+         * Returns if entry is added with target fragment (by pushForResult).
+         *
+         * @return True if entry is having target.
+         */
+        public boolean isWithTarget() {
+            return withTarget;
+        }
+
+        @Override
+        public int getBreadCrumbTitleRes() {
+            return 0;
+        }
+
+        @Override
+        public int getBreadCrumbShortTitleRes() {
+            return 0;
+        }
+
+        @Nullable
+        @Override
+        public CharSequence getBreadCrumbTitle() {
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public CharSequence getBreadCrumbShortTitle() {
+            return null;
+        }
+
+    }
+
+}
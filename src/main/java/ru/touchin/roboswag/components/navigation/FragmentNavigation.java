@@ -22,6 +22,7 @@ package ru.touchin.roboswag.components.navigation;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.annotation.IdRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -29,8 +30,18 @@ import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
 import android.support.v4.app.FragmentTransaction;
 import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewTreeObserver;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.touchin.roboswag.components.navigation.activities.BaseActivity;
+import ru.touchin.roboswag.components.navigation.fragments.ViewControllerFragment;
+import ru.touchin.roboswag.components.utils.UiUtils;
 import ru.touchin.roboswag.core.log.Lc;
+import ru.touchin.roboswag.core.utils.ShouldNotHappenException;
+import rx.functions.Action0;
 import rx.functions.Func1;
 
 /**
@@ -46,6 +57,8 @@ import rx.functions.Func1;
  * 4) {@link #pushForResult} means to push fragment with target fragment. It is also adding {@link #WITH_TARGET_FRAGMENT_TAG_MARK} tag.
  * Also if such up/back navigation logic is not OK then {@link #backTo(Func1)} method could be used with any condition to back to.
  * In that case in any stack-change method it is allowed to setup fragment transactions.
+ * If navigation is created with limit of live back stack entries then {@link LazyBackStack} is used instead of {@link FragmentManager}'s back stack,
+ * otherwise {@link FragmentManager}'s back stack is indexed by {@link BackStackIndex}.
  */
 public class FragmentNavigation {
 
@@ -58,11 +71,45 @@ public class FragmentNavigation {
     private final FragmentManager fragmentManager;
     @IdRes
     private final int containerViewId;
+    @Nullable
+    private final LazyBackStack lazyBackStack;
+    // created only if lazyBackStack is null
+    @Nullable
+    private final BackStackIndex backStackIndex;
+    @Nullable
+    private List<BatchedPush> batchedPushes;
+    private boolean batchClearsStack;
 
     public FragmentNavigation(@NonNull final Context context, @NonNull final FragmentManager fragmentManager, @IdRes final int containerViewId) {
         this.context = context;
         this.fragmentManager = fragmentManager;
         this.containerViewId = containerViewId;
+        this.lazyBackStack = null;
+        this.backStackIndex = new BackStackIndex(fragmentManager);
+        fragmentManager.addOnBackStackChangedListener(backStackIndex);
+    }
+
+    /**
+     * Creates navigation which is using {@link LazyBackStack} instead of {@link FragmentManager}'s back stack.
+     * Only maxLiveBackStackEntries top fragments are kept in {@link FragmentManager}, others are kept as descriptors and instantiated on back.
+     * If context is {@link BaseActivity} then navigation handles it's back button itself,
+     * also call {@link #saveState(Bundle)} and {@link #restoreState(Bundle)} from activity.
+     *
+     * @param context                 Context to instantiate fragments;
+     * @param fragmentManager         {@link FragmentManager} of fragments;
+     * @param containerViewId         ID of container view of fragments;
+     * @param maxLiveBackStackEntries Maximum count of live entries in stack.
+     */
+    public FragmentNavigation(@NonNull final Context context, @NonNull final FragmentManager fragmentManager,
+                              @IdRes final int containerViewId, final int maxLiveBackStackEntries) {
+        this.context = context;
+        this.fragmentManager = fragmentManager;
+        this.containerViewId = containerViewId;
+        this.lazyBackStack = new LazyBackStack(context, fragmentManager, containerViewId, maxLiveBackStackEntries);
+        this.backStackIndex = null;
+        if (context instanceof BaseActivity) {
+            ((BaseActivity) context).addOnBackPressedListener(this::back);
+        }
     }
 
     /**
@@ -85,20 +132,58 @@ public class FragmentNavigation {
         return fragmentManager;
     }
 
+    /**
+     * Returns {@link LazyBackStack} if navigation is created with limited count of live back stack entries.
+     *
+     * @return {@link LazyBackStack} or null if navigation is using {@link FragmentManager}'s back stack.
+     */
+    @Nullable
+    public LazyBackStack getLazyBackStack() {
+        return lazyBackStack;
+    }
+
+    /**
+     * Saves state of navigation. Call it at {@link android.app.Activity#onSaveInstanceState(Bundle)}.
+     *
+     * @param outState Bundle to save state into.
+     */
+    public void saveState(@NonNull final Bundle outState) {
+        if (lazyBackStack != null) {
+            lazyBackStack.saveState(outState);
+        }
+    }
+
+    /**
+     * Restores state of navigation saved by {@link #saveState(Bundle)}. Call it at {@link android.app.Activity#onCreate(Bundle)}.
+     *
+     * @param savedInstanceState Bundle to restore state from.
+     */
+    public void restoreState(@Nullable final Bundle savedInstanceState) {
+        if (lazyBackStack != null && savedInstanceState != null) {
+            lazyBackStack.restoreState(savedInstanceState);
+        }
+    }
+
+    @NonNull
+    private BackStackIndex getBackStackIndex() {
+        if (backStackIndex == null) {
+            throw new ShouldNotHappenException("BackStackIndex is not used with LazyBackStack");
+        }
+        return backStackIndex;
+    }
+
     /**
      * Returns if last fragment in stack is top (added by {@link #setAsTop} or {@link #setInitial}) like fragment from sidebar menu.
      *
      * @return True if last fragment on stack has TOP_FRAGMENT_TAG_MARK.
      */
     public boolean isCurrentFragmentTop() {
-        if (fragmentManager.getBackStackEntryCount() == 0) {
-            return true;
+        if (lazyBackStack != null) {
+            final StackEntry topEntry = lazyBackStack.getTopEntry();
+            return topEntry == null || (topEntry.getName() != null && topEntry.getName().contains(TOP_FRAGMENT_TAG_MARK));
         }
-
-        final String topFragmentTag = fragmentManager
-                .getBackStackEntryAt(fragmentManager.getBackStackEntryCount() - 1)
-                .getName();
-        return topFragmentTag != null && topFragmentTag.contains(TOP_FRAGMENT_TAG_MARK);
+        final BackStackIndex.Entry topEntry = getBackStackIndex().getTopEntry();
+        return topEntry == null || topEntry.hasTopMark();
     }
 
     /**
@@ -134,13 +219,20 @@ public class FragmentNavigation {
             return;
         }
 
-        final Fragment fragment = Fragment.instantiate(context, fragmentClass.getName(), args);
-        if (targetFragment != null) {
-            if (fragmentManager != targetFragment.getFragmentManager()) {
-                Lc.assertion("FragmentManager of target is differ then of creating fragment. Target will be lost after restoring activity. "
-                        + targetFragment.getFragmentManager() + " != " + fragmentManager);
+        if (batchedPushes != null) {
+            batchedPushes.add(new BatchedPush(fragmentClass, targetFragment, args, backStackTag, transactionSetup));
+            return;
+        }
+
+        final Fragment fragment = instantiateFragment(fragmentClass, targetFragment, args);
+        if (lazyBackStack != null) {
+            final FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
+            if (lazyBackStack.getTopEntry() != null) {
+                fragmentTransaction.setTransition(getDefaultTransition());
             }
-            fragment.setTargetFragment(targetFragment, 0);
+            lazyBackStack.push(fragmentTransaction, fragment, args, backStackTag, targetFragment);
+            (transactionSetup != null ? transactionSetup.call(fragmentTransaction) : fragmentTransaction).commitNow();
+            return;
         }
 
         final FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction()
@@ -149,11 +241,123 @@ public class FragmentNavigation {
         if (fragmentManager.getBackStackEntryCount() != 0) {
             fragmentTransaction.setTransition(getDefaultTransition());
         }
-        if (transactionSetup != null) {
-            transactionSetup.call(fragmentTransaction).commit();
-        } else {
-            fragmentTransaction.commit();
+        final int backStackEntryId = transactionSetup != null
+                ? transactionSetup.call(fragmentTransaction).commit()
+                : fragmentTransaction.commit();
+        getBackStackIndex().onEntryCommitted(backStackEntryId, fragmentClass.getName(), backStackTag);
+    }
+
+    /**
+     * Makes all pushes and setInitial calls of navigationActions as one transaction.
+     * Only last fragment is instantiated, other are just recorded as {@link StackEntry}s of {@link LazyBackStack}
+     * and instantiated when user goes back to them, also only transaction setup of last push is applied.
+     * Batching is available only for navigation with {@link LazyBackStack} as {@link FragmentManager}'s back stack
+     * could not keep entries without fragments, so otherwise actions are executed one by one.
+     * Time of batch including first draw of last fragment is logged into {@link UiUtils#UI_METRICS_LC_GROUP}
+     * and recorded as {@link ViewControllerMetrics.Metric#BATCH_TO_FINAL_SCREEN} if batch is sampled.
+     * Do not call it while {@link FragmentManager} is executing transactions.
+     *
+     * @param navigationActions Actions with this navigation like setInitial and pushes.
+     */
+    public void batch(@NonNull final Action0 navigationActions) {
+        if (batchedPushes != null) {
+            navigationActions.call();
+            return;
+        }
+        if (fragmentManager.isDestroyed()) {
+            Lc.assertion("FragmentManager is destroyed");
+            return;
+        }
+        if (lazyBackStack == null) {
+            Lc.assertion("Batch is available only for navigation with LazyBackStack");
+            navigationActions.call();
+            return;
+        }
+
+        final long startTime = SystemClock.uptimeMillis();
+        final List<BatchedPush> pushes = new ArrayList<>();
+        batchedPushes = pushes;
+        batchClearsStack = false;
+        try {
+            navigationActions.call();
+        } finally {
+            batchedPushes = null;
+        }
+        if (pushes.isEmpty()) {
+            if (batchClearsStack) {
+                beforeSetInitialActions();
+            }
+            return;
+        }
+
+        final Fragment lastFragment = commitBatch(lazyBackStack, pushes);
+        final long commitTime = SystemClock.uptimeMillis() - startTime;
+        final boolean sampled = ViewControllerMetrics.shouldSample();
+        final View lastView = lastFragment.getView();
+        if (lastView == null) {
+            UiUtils.UI_METRICS_LC_GROUP.i("Batch of %d screens committed in %dms", pushes.size(), commitTime);
+            if (sampled) {
+                ViewControllerMetrics.record(getScreenClass(lastFragment), ViewControllerMetrics.Metric.BATCH_TO_FINAL_SCREEN, commitTime);
+            }
+            return;
+        }
+        lastView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                lastView.getViewTreeObserver().removeOnPreDrawListener(this);
+                final long drawTime = SystemClock.uptimeMillis() - startTime;
+                UiUtils.UI_METRICS_LC_GROUP.i("Batch of %d screens committed in %dms and drawn in %dms", pushes.size(), commitTime, drawTime);
+                if (sampled) {
+                    ViewControllerMetrics.record(getScreenClass(lastFragment), ViewControllerMetrics.Metric.BATCH_TO_FINAL_SCREEN, drawTime);
+                }
+                return true;
+            }
+        });
+    }
+
+    // metrics are collected by classes of ViewControllers
+    @NonNull
+    private static Class<?> getScreenClass(@NonNull final Fragment fragment) {
+        return fragment instanceof ViewControllerFragment
+                ? ((ViewControllerFragment<?, ?>) fragment).getViewControllerClass()
+                : fragment.getClass();
+    }
+
+    @NonNull
+    @SuppressLint("CommitTransaction")
+    //CommitTransaction: it is ok as we could setup transaction before commit
+    private Fragment commitBatch(@NonNull final LazyBackStack backStack, @NonNull final List<BatchedPush> pushes) {
+        final FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
+        if (batchClearsStack) {
+            backStack.clear(fragmentTransaction);
+        }
+        for (int i = 0; i < pushes.size() - 1; i++) {
+            final BatchedPush push = pushes.get(i);
+            backStack.pushDescriptor(push.fragmentClass.getName(), push.args, push.backStackTag, push.targetFragment);
+        }
+        final BatchedPush lastPush = pushes.get(pushes.size() - 1);
+        final Fragment fragment = instantiateFragment(lastPush.fragmentClass, lastPush.targetFragment, lastPush.args);
+        if (backStack.getTopEntry() != null) {
+            fragmentTransaction.setTransition(getDefaultTransition());
+        }
+        backStack.push(fragmentTransaction, fragment, lastPush.args, lastPush.backStackTag, lastPush.targetFragment);
+        (lastPush.transactionSetup != null ? lastPush.transactionSetup.call(fragmentTransaction) : fragmentTransaction).commitNow();
+        return fragment;
+    }
+
+    @NonNull
+    private Fragment instantiateFragment(@NonNull final Class<? extends Fragment> fragmentClass,
+                                         @Nullable final Fragment targetFragment,
+                                         @Nullable final Bundle args) {
+        final Fragment fragment = Fragment.instantiate(context, fragmentClass.getName(), args);
+        if (targetFragment != null) {
+            if (fragmentManager != targetFragment.getFragmentManager()) {
+                Lc.assertion("FragmentManager of target is differ then of creating fragment. Target will be lost after restoring activity. "
+                        + targetFragment.getFragmentManager() + " != " + fragmentManager);
+            }
+            fragment.setTargetFragment(targetFragment, 0);
         }
+        return fragment;
     }
 
     /**
@@ -171,6 +375,15 @@ public class FragmentNavigation {
      * @return True if it have back to some entry in stack.
      */
     public boolean back() {
+        if (lazyBackStack != null) {
+            final FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction()
+                    .setTransition(FragmentTransaction.TRANSIT_FRAGMENT_CLOSE);
+            if (lazyBackStack.pop(fragmentTransaction)) {
+                fragmentTransaction.commitNow();
+                return true;
+            }
+            return false;
+        }
         if (fragmentManager.getBackStackEntryCount() > 1) {
             fragmentManager.popBackStack();
             return true;
@@ -185,15 +398,27 @@ public class FragmentNavigation {
      * @return True if it have back to some entry in stack.
      */
     public boolean backTo(@NonNull final Func1<FragmentManager.BackStackEntry, Boolean> condition) {
-        final int stackSize = fragmentManager.getBackStackEntryCount();
+        if (lazyBackStack != null) {
+            final FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction()
+                    .setTransition(FragmentTransaction.TRANSIT_FRAGMENT_CLOSE);
+            if (lazyBackStack.popTo(fragmentTransaction, condition)) {
+                fragmentTransaction.commitNow();
+                return true;
+            }
+            return false;
+        }
+        final List<BackStackIndex.Entry> entries = getBackStackIndex().getEntries();
         Integer id = null;
-        for (int i = stackSize - 2; i >= 0; i--) {
-            final FragmentManager.BackStackEntry backStackEntry = fragmentManager.getBackStackEntryAt(i);
-            id = backStackEntry.getId();
-            if (condition.call(backStackEntry)) {
+        for (int i = entries.size() - 2; i >= 0; i--) {
+            id = entries.get(i).getId();
+            if (condition.call(entries.get(i))) {
                 break;
             }
         }
+        return popBackStackTo(id);
+    }
+
+    private boolean popBackStackTo(@Nullable final Integer id) {
         if (id != null) {
             fragmentManager.popBackStack(id, 0);
             return true;
@@ -211,8 +436,16 @@ public class FragmentNavigation {
     @SuppressWarnings("PMD.ShortMethodName")
     //ShortMethodName: it is ok because method name is good!
     public boolean up() {
-        return backTo(backStackEntry ->
-                backStackEntry.getName() != null && backStackEntry.getName().endsWith(TOP_FRAGMENT_TAG_MARK));
+        if (lazyBackStack != null) {
+            return backTo(backStackEntry ->
+                    backStackEntry.getName() != null && backStackEntry.getName().endsWith(TOP_FRAGMENT_TAG_MARK));
+        }
+        final List<BackStackIndex.Entry> entries = getBackStackIndex().getEntries();
+        if (entries.size() < 2) {
+            return false;
+        }
+        final int topPosition = getBackStackIndex().getNearestTopPosition(entries.size() - 2);
+        return popBackStackTo(entries.get(topPosition >= 0 ? topPosition : 0).getId());
     }
 
     /**
@@ -411,9 +644,47 @@ public class FragmentNavigation {
             return;
         }
 
+        if (batchedPushes != null) {
+            batchedPushes.clear();
+            batchClearsStack = true;
+            return;
+        }
+        if (lazyBackStack != null) {
+            final FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
+            lazyBackStack.clear(fragmentTransaction);
+            fragmentTransaction.commitNow();
+            return;
+        }
         if (fragmentManager.getBackStackEntryCount() > 0) {
             fragmentManager.popBackStack(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
         }
     }
 
+    private static class BatchedPush {
+
+        @NonNull
+        private final Class<? extends Fragment> fragmentClass;
+        @Nullable
+        private final Fragment targetFragment;
+        @Nullable
+        private final Bundle args;
+        @Nullable
+        private final String backStackTag;
+        @Nullable
+        private final Func1<FragmentTransaction, FragmentTransaction> transactionSetup;
+
+        public BatchedPush(@NonNull final Class<? extends Fragment> fragmentClass,
+                           @Nullable final Fragment targetFragment,
+                           @Nullable final Bundle args,
+                           @Nullable final String backStackTag,
+                           @Nullable final Func1<FragmentTransaction, FragmentTransaction> transactionSetup) {
+            this.fragmentClass = fragmentClass;
+            this.targetFragment = targetFragment;
+            this.args = args;
+            this.backStackTag = backStackTag;
+            this.transactionSetup = transactionSetup;
+        }
+
+    }
+
 }
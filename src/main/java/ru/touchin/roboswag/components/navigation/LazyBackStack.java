@@ -0,0 +1,395 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.navigation;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.support.annotation.IdRes;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentManager;
+import android.support.v4.app.FragmentTransaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import ru.touchin.roboswag.components.navigation.fragments.ViewControllerFragment;
+import ru.touchin.roboswag.core.log.Lc;
+import ru.touchin.roboswag.core.utils.ShouldNotHappenException;
+import rx.functions.Func1;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Back stack of {@link FragmentNavigation} which is not using {@link FragmentManager}'s back stack.
+ * Only limited count of top entries are live: top one is added to container and others are detached.
+ * Deeper entries are kept only as {@link StackEntry} descriptors (fragment class, arguments and saved state)
+ * and their fragments are instantiated again when user goes back to them.
+ * Entries which fragments are targets of other entries are always live.
+ * Saved states of entries are saving through {@link StateStorage} if it is set
+ * (see {@link ViewControllerFragment#setStateStorage}) so big states are not kept in {@link Bundle} of activity.
+ * All changes are committing via {@link FragmentTransaction#commitNow()}
+ * so do not change stack while {@link FragmentManager} is executing transactions.
+ */
+public class LazyBackStack {
+
+    private static final String ENTRIES_EXTRA = "LAZY_BACK_STACK_ENTRIES_EXTRA";
+    private static final String NEXT_ENTRY_ID_EXTRA = "LAZY_BACK_STACK_NEXT_ENTRY_ID_EXTRA";
+    private static final String SAVED_STATES_EXTRA = "LAZY_BACK_STACK_SAVED_STATES_EXTRA";
+    private static final String STACK_ID_EXTRA = "LAZY_BACK_STACK_ID_EXTRA";
+
+    @NonNull
+    private final Context context;
+    @NonNull
+    private final FragmentManager fragmentManager;
+    @IdRes
+    private final int containerViewId;
+    private final int maxLiveEntries;
+    @NonNull
+    private final ArrayList<StackEntry> entries = new ArrayList<>();
+    private int nextEntryId;
+    // persistent ID of stack to name files of saved states of entries in StateStorage
+    @NonNull
+    private String stackId = UUID.randomUUID().toString();
+
+    public LazyBackStack(@NonNull final Context context, @NonNull final FragmentManager fragmentManager,
+                         @IdRes final int containerViewId, final int maxLiveEntries) {
+        if (maxLiveEntries < 1) {
+            throw new ShouldNotHappenException("There should be at least one live entry but " + maxLiveEntries + " passed");
+        }
+        this.context = context;
+        this.fragmentManager = fragmentManager;
+        this.containerViewId = containerViewId;
+        this.maxLiveEntries = maxLiveEntries;
+    }
+
+    /**
+     * Returns maximum count of entries which fragments are kept in {@link FragmentManager}.
+     *
+     * @return Maximum count of live entries.
+     */
+    public int getMaxLiveEntries() {
+        return maxLiveEntries;
+    }
+
+    /**
+     * Returns entries of stack from bottom to top.
+     *
+     * @return List of entries.
+     */
+    @NonNull
+    public List<StackEntry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Returns top entry of stack.
+     *
+     * @return Top entry or null if stack is empty.
+     */
+    @Nullable
+    public StackEntry getTopEntry() {
+        return entries.isEmpty() ? null : entries.get(entries.size() - 1);
+    }
+
+    /**
+     * Returns if fragment of entry is live in {@link FragmentManager}.
+     *
+     * @param entry Entry of stack;
+     * @return True if fragment of entry is live.
+     */
+    public boolean isLive(@NonNull final StackEntry entry) {
+        return fragmentManager.findFragmentByTag(entry.getTag()) != null;
+    }
+
+    /**
+     * Returns sizes in bytes of descriptors of entries from bottom to top. Memory of live fragments is not included.
+     *
+     * @return Sizes of entries.
+     */
+    @NonNull
+    public int[] measureEntriesSizes() {
+        final int[] result = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            result[i] = entries.get(i).measureSize();
+        }
+        return result;
+    }
+
+    /**
+     * Finds entry which fragment is specific fragment.
+     *
+     * @param fragment Fragment to find entry of;
+     * @return Entry or null if fragment is not in stack.
+     */
+    @Nullable
+    public StackEntry findEntry(@NonNull final Fragment fragment) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (entries.get(i).getTag().equals(fragment.getTag())) {
+                return entries.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates new entry on top of stack with already instantiated fragment.
+     *
+     * @param transaction    Transaction to add fragment with;
+     * @param fragment       Instantiated fragment;
+     * @param args           Arguments of fragment;
+     * @param name           Name of entry;
+     * @param targetFragment Target fragment which is set to fragment.
+     */
+    public void push(@NonNull final FragmentTransaction transaction, @NonNull final Fragment fragment, @Nullable final Bundle args,
+                     @Nullable final String name, @Nullable final Fragment targetFragment) {
+        final StackEntry entry = new StackEntry(nextEntryId++, fragment.getClass().getName(), args, name,
+                targetFragment != null ? findEntry(targetFragment) : null);
+        transaction.add(containerViewId, fragment, entry.getTag());
+        entries.add(entry);
+        updateLiveEntries(transaction);
+    }
+
+    /**
+     * Creates new entry on top of stack without instantiating it's fragment.
+     * Fragment will be instantiated when user goes back to entry.
+     * Push fragment via {@link #push} after it to show something.
+     *
+     * @param fragmentClassName Class name of fragment;
+     * @param args              Arguments of fragment;
+     * @param name              Name of entry;
+     * @param targetFragment    Target fragment which will be set to fragment.
+     */
+    public void pushDescriptor(@NonNull final String fragmentClassName, @Nullable final Bundle args,
+                               @Nullable final String name, @Nullable final Fragment targetFragment) {
+        entries.add(new StackEntry(nextEntryId++, fragmentClassName, args, name,
+                targetFragment != null ? findEntry(targetFragment) : null));
+    }
+
+    /**
+     * Removes top entry and shows previous one.
+     *
+     * @param transaction Transaction to make changes with;
+     * @return True if there was previous entry.
+     */
+    public boolean pop(@NonNull final FragmentTransaction transaction) {
+        return popTo(transaction, entries.size() - 2);
+    }
+
+    /**
+     * Removes all entries above specific one and shows it.
+     *
+     * @param transaction Transaction to make changes with;
+     * @param condition   Condition of entry to go back to. If no entry satisfies it then stack goes back to bottom entry;
+     * @return True if there was entry below top one.
+     */
+    public boolean popTo(@NonNull final FragmentTransaction transaction, @NonNull final Func1<FragmentManager.BackStackEntry, Boolean> condition) {
+        int index = -1;
+        for (int i = entries.size() - 2; i >= 0; i--) {
+            index = i;
+            if (condition.call(entries.get(i))) {
+                break;
+            }
+        }
+        return popTo(transaction, index);
+    }
+
+    private boolean popTo(@NonNull final FragmentTransaction transaction, final int index) {
+        if (index < 0 || index >= entries.size() - 1) {
+            return false;
+        }
+        while (entries.size() > index + 1) {
+            discard(transaction, entries.remove(entries.size() - 1));
+        }
+        materialize(transaction, entries.get(index));
+        updateLiveEntries(transaction);
+        return true;
+    }
+
+    /**
+     * Removes all entries from stack.
+     *
+     * @param transaction Transaction to make changes with.
+     */
+    public void clear(@NonNull final FragmentTransaction transaction) {
+        for (final StackEntry entry : entries) {
+            discard(transaction, entry);
+        }
+        entries.clear();
+    }
+
+    /**
+     * Saves entries into {@link Bundle}. Call it at {@link android.app.Activity#onSaveInstanceState(Bundle)}.
+     *
+     * @param outState Bundle to save into.
+     */
+    public void saveState(@NonNull final Bundle outState) {
+        outState.putParcelableArrayList(ENTRIES_EXTRA, entries);
+        outState.putInt(NEXT_ENTRY_ID_EXTRA, nextEntryId);
+        outState.putString(STACK_ID_EXTRA, stackId);
+        final StateStorage stateStorage = ViewControllerFragment.getStateStorage();
+        final Bundle savedStates = new Bundle();
+        for (final StackEntry entry : entries) {
+            if (entry.getSavedState() == null) {
+                continue;
+            }
+            if (stateStorage != null) {
+                stateStorage.saveBytes(savedStates, entry.getTag(), getStoredStateId(entry), marshall(entry.getSavedState()));
+            } else {
+                savedStates.putParcelable(entry.getTag(), entry.getSavedState());
+            }
+        }
+        outState.putBundle(SAVED_STATES_EXTRA, savedStates);
+    }
+
+    /**
+     * Restores entries from {@link Bundle} which was saved by {@link #saveState(Bundle)}.
+     * Live fragments are restored by {@link FragmentManager} itself and bound to entries by tags.
+     *
+     * @param savedInstanceState Bundle to restore from.
+     */
+    public void restoreState(@NonNull final Bundle savedInstanceState) {
+        final ArrayList<StackEntry> savedEntries = savedInstanceState.getParcelableArrayList(ENTRIES_EXTRA);
+        entries.clear();
+        if (savedEntries != null) {
+            entries.addAll(savedEntries);
+        }
+        nextEntryId = savedInstanceState.getInt(NEXT_ENTRY_ID_EXTRA);
+        final String savedStackId = savedInstanceState.getString(STACK_ID_EXTRA);
+        if (savedStackId != null) {
+            stackId = savedStackId;
+        }
+        final Bundle savedStates = savedInstanceState.getBundle(SAVED_STATES_EXTRA);
+        if (savedStates == null) {
+            return;
+        }
+        final StateStorage stateStorage = ViewControllerFragment.getStateStorage();
+        for (final StackEntry entry : entries) {
+            if (stateStorage != null) {
+                final byte[] bytes = stateStorage.restoreBytes(savedStates, entry.getTag());
+                entry.setSavedState(bytes != null ? unmarshall(bytes) : null);
+            } else {
+                entry.setSavedState(savedStates.<Fragment.SavedState>getParcelable(entry.getTag()));
+            }
+        }
+    }
+
+    @NonNull
+    private static byte[] marshall(@NonNull final Fragment.SavedState savedState) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeParcelable(savedState, 0);
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Nullable
+    private static Fragment.SavedState unmarshall(@NonNull final byte[] bytes) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(bytes, 0, bytes.length);
+            parcel.setDataPosition(0);
+            return parcel.readParcelable(Fragment.SavedState.class.getClassLoader());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @NonNull
+    private String getStoredStateId(@NonNull final StackEntry entry) {
+        return stackId + '_' + entry.getId();
+    }
+
+    // saved state of entry is not needed anymore so it's file in StateStorage should be removed too
+    private void dropSavedState(@NonNull final StackEntry entry) {
+        if (entry.getSavedState() != null) {
+            ViewControllerFragment.removeStoredState(getStoredStateId(entry));
+        }
+        entry.setSavedState(null);
+        entry.setStateId(null);
+    }
+
+    private void discard(@NonNull final FragmentTransaction transaction, @NonNull final StackEntry entry) {
+        final Fragment fragment = fragmentManager.findFragmentByTag(entry.getTag());
+        if (fragment != null) {
+            transaction.remove(fragment);
+        } else if (entry.getStateId() != null) {
+            // fragment will never be instantiated from saved state so state stored out of it is not needed
+            ViewControllerFragment.removeStoredState(entry.getStateId());
+        }
+        dropSavedState(entry);
+    }
+
+    private void materialize(@NonNull final FragmentTransaction transaction, @NonNull final StackEntry entry) {
+        final Fragment liveFragment = fragmentManager.findFragmentByTag(entry.getTag());
+        if (liveFragment != null) {
+            if (liveFragment.isDetached()) {
+                transaction.attach(liveFragment);
+            }
+            return;
+        }
+        final Fragment fragment = Fragment.instantiate(context, entry.getFragmentClassName(), entry.getArgs());
+        if (entry.getSavedState() != null) {
+            fragment.setInitialSavedState(entry.getSavedState());
+            dropSavedState(entry);
+        }
+        if (entry.hasTarget()) {
+            final Fragment targetFragment = fragmentManager.findFragmentByTag(entry.getTargetTag());
+            if (targetFragment != null) {
+                fragment.setTargetFragment(targetFragment, 0);
+            } else {
+                Lc.assertion("Target of " + entry.getFragmentClassName() + " is lost");
+            }
+        }
+        transaction.add(containerViewId, fragment, entry.getTag());
+    }
+
+    private boolean isTarget(@NonNull final StackEntry entry) {
+        for (final StackEntry other : entries) {
+            if (entry.isTargetOf(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void updateLiveEntries(@NonNull final FragmentTransaction transaction) {
+        for (int i = 0; i < entries.size() - 1; i++) {
+            final StackEntry entry = entries.get(i);
+            final Fragment fragment = fragmentManager.findFragmentByTag(entry.getTag());
+            if (fragment == null) {
+                continue;
+            }
+            if (entries.size() - 1 - i >= maxLiveEntries && !isTarget(entry)) {
+                entry.setSavedState(fragmentManager.saveFragmentInstanceState(fragment));
+                entry.setStateId(fragment instanceof ViewControllerFragment ? ((ViewControllerFragment<?, ?>) fragment).getStateId() : null);
+                transaction.remove(fragment);
+            } else if (!fragment.isDetached()) {
+                transaction.detach(fragment);
+            }
+        }
+    }
+
+}
@@ -6,19 +6,56 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import java.io.IOException;
+import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * Created by Gavriil Sitnikov on 6/10/2016.
  * Wrapper over bundle to allow serialization logic for it.
  * Use it to save states of views like WebView, MapView etc.
+ * Bundle is written as size-prefixed bytes of {@link Parcel} and read fully into thread-local pooled buffer.
+ * Big bundles could be compressed by chunks, see {@link #setCompressionThreshold(int)}.
  */
 public class SerializableBundle implements Serializable {
 
     private static final long serialVersionUID = 0L;
 
+    private static final int COMPRESSED_FORMAT_MARK = -1;
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<byte[]> DATA_BUFFER = new ThreadLocal<>();
+    private static final ThreadLocal<byte[]> CHUNK_BUFFER = new ThreadLocal<>();
+
+    private static int compressionThreshold = Integer.MAX_VALUE;
+
+    /**
+     * Sets minimum size in bytes of marshalled bundle to compress it on serialization. By default compression is disabled.
+     * Serialized data is readable regardless of this setting.
+     *
+     * @param compressionThreshold Minimum size of bundle to compress.
+     */
+    public static void setCompressionThreshold(final int compressionThreshold) {
+        SerializableBundle.compressionThreshold = compressionThreshold;
+    }
+
+    @NonNull
+    private static byte[] obtainBuffer(@NonNull final ThreadLocal<byte[]> pool, final int size) {
+        if (size > MAX_POOLED_BUFFER_SIZE) {
+            return new byte[size];
+        }
+        byte[] result = pool.get();
+        if (result == null || result.length < size) {
+            result = new byte[Math.max(size, CHUNK_SIZE)];
+            pool.set(result);
+        }
+        return result;
+    }
+
     @Nullable
     private Bundle bundle;
 
@@ -42,29 +79,100 @@ public class SerializableBundle implements Serializable {
     }
 
     private void writeObject(@NonNull final ObjectOutputStream outputStream) throws IOException {
-        if (bundle != null) {
-            final Parcel parcel = Parcel.obtain();
+        if (bundle == null) {
+            outputStream.writeInt(0);
+            return;
+        }
+        final Parcel parcel = Parcel.obtain();
+        try {
             parcel.writeBundle(bundle);
             final byte[] bytes = parcel.marshall();
-            outputStream.writeInt(bytes.length);
-            outputStream.write(bytes);
+            if (bytes.length >= compressionThreshold) {
+                writeCompressed(outputStream, bytes);
+            } else {
+                outputStream.writeInt(bytes.length);
+                outputStream.write(bytes);
+            }
+        } finally {
             parcel.recycle();
-        } else {
+        }
+    }
+
+    private void writeCompressed(@NonNull final ObjectOutputStream outputStream, @NonNull final byte[] bytes) throws IOException {
+        outputStream.writeInt(COMPRESSED_FORMAT_MARK);
+        outputStream.writeInt(bytes.length);
+        final byte[] chunk = obtainBuffer(CHUNK_BUFFER, CHUNK_SIZE);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            while (!deflater.finished()) {
+                final int chunkSize = deflater.deflate(chunk);
+                if (chunkSize > 0) {
+                    outputStream.writeInt(chunkSize);
+                    outputStream.write(chunk, 0, chunkSize);
+                }
+            }
             outputStream.writeInt(0);
+        } finally {
+            deflater.end();
         }
     }
 
     private void readObject(@NonNull final ObjectInputStream inputStream) throws IOException, ClassNotFoundException {
-        final int size = inputStream.readInt();
-        if (size > 0) {
-            final byte[] bytes = new byte[size];
-            inputStream.read(bytes);
-            final Parcel parcel = Parcel.obtain();
-            parcel.unmarshall(bytes, 0, bytes.length);
+        final int header = inputStream.readInt();
+        if (header == 0) {
+            return;
+        }
+        final int size = header == COMPRESSED_FORMAT_MARK ? inputStream.readInt() : header;
+        if (size < 0) {
+            throw new InvalidObjectException("Wrong size of bundle: " + size);
+        }
+        final byte[] bytes = obtainBuffer(DATA_BUFFER, size);
+        if (header == COMPRESSED_FORMAT_MARK) {
+            readCompressed(inputStream, bytes, size);
+        } else {
+            inputStream.readFully(bytes, 0, size);
+        }
+        final Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(bytes, 0, size);
             parcel.setDataPosition(0);
             bundle = parcel.readBundle(Thread.currentThread().getContextClassLoader());
+        } finally {
             parcel.recycle();
         }
     }
 
+    private void readCompressed(@NonNull final ObjectInputStream inputStream, @NonNull final byte[] bytes, final int size) throws IOException {
+        final byte[] chunk = obtainBuffer(CHUNK_BUFFER, CHUNK_SIZE);
+        final Inflater inflater = new Inflater();
+        try {
+            int inflatedSize = 0;
+            int chunkSize = inputStream.readInt();
+            while (chunkSize > 0) {
+                if (chunkSize > chunk.length) {
+                    throw new InvalidObjectException("Wrong size of chunk: " + chunkSize);
+                }
+                inputStream.readFully(chunk, 0, chunkSize);
+                inflater.setInput(chunk, 0, chunkSize);
+                while (!inflater.needsInput() && !inflater.finished()) {
+                    final int inflated = inflater.inflate(bytes, inflatedSize, size - inflatedSize);
+                    if (inflated == 0 && inflatedSize == size) {
+                        break;
+                    }
+                    inflatedSize += inflated;
+                }
+                chunkSize = inputStream.readInt();
+            }
+            if (inflatedSize != size) {
+                throw new InvalidObjectException("Bundle is truncated: " + inflatedSize + " of " + size);
+            }
+        } catch (final DataFormatException exception) {
+            throw new InvalidObjectException(exception.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
 }
@@ -0,0 +1,250 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.navigation;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentManager;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Lightweight descriptor of fragment in {@link LazyBackStack}: class of fragment, it's arguments and saved state.
+ * Fragment of entry could be live (added or detached in {@link FragmentManager}) or not instantiated at all - in that case it will be
+ * instantiated from descriptor when user goes back to it.
+ * Saved state is not written into {@link Parcel} with descriptor as it could be big: {@link LazyBackStack} is saving it separately.
+ */
+public class StackEntry implements FragmentManager.BackStackEntry, Parcelable {
+
+    public static final Creator<StackEntry> CREATOR = new Creator<StackEntry>() {
+        @NonNull
+        @Override
+        public StackEntry createFromParcel(@NonNull final Parcel source) {
+            return new StackEntry(source);
+        }
+
+        @NonNull
+        @Override
+        public StackEntry[] newArray(final int size) {
+            return new StackEntry[size];
+        }
+    };
+
+    private static final String TAG_PREFIX = "StackEntry:";
+    private static final int NO_TARGET = -1;
+
+    private final int id;
+    @NonNull
+    private final String fragmentClassName;
+    @Nullable
+    private final Bundle args;
+    @Nullable
+    private final String name;
+    private final int targetEntryId;
+    @Nullable
+    private Fragment.SavedState savedState;
+    @Nullable
+    private String stateId;
+
+    public StackEntry(final int id, @NonNull final String fragmentClassName, @Nullable final Bundle args,
+                      @Nullable final String name, @Nullable final StackEntry targetEntry) {
+        this.id = id;
+        this.fragmentClassName = fragmentClassName;
+        this.args = args;
+        this.name = name;
+        this.targetEntryId = targetEntry != null ? targetEntry.id : NO_TARGET;
+    }
+
+    protected StackEntry(@NonNull final Parcel source) {
+        id = source.readInt();
+        fragmentClassName = source.readString();
+        args = source.readBundle(getClass().getClassLoader());
+        name = source.readString();
+        targetEntryId = source.readInt();
+        stateId = source.readString();
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns tag of fragment of entry in {@link FragmentManager}.
+     *
+     * @return Tag of fragment.
+     */
+    @NonNull
+    public String getTag() {
+        return TAG_PREFIX + id;
+    }
+
+    /**
+     * Returns class name of fragment of entry.
+     *
+     * @return Class name of fragment.
+     */
+    @NonNull
+    public String getFragmentClassName() {
+        return fragmentClassName;
+    }
+
+    /**
+     * Returns arguments to instantiate fragment of entry with.
+     *
+     * @return Arguments of fragment.
+     */
+    @Nullable
+    public Bundle getArgs() {
+        return args;
+    }
+
+    /**
+     * Returns if entry is having target entry which fragment should be set as {@link Fragment#getTargetFragment()}.
+     *
+     * @return True if entry is having target.
+     */
+    public boolean hasTarget() {
+        return targetEntryId != NO_TARGET;
+    }
+
+    /**
+     * Returns if fragment of this entry is target of fragment of other entry.
+     *
+     * @param entry Other entry;
+     * @return True if this entry is target of other entry.
+     */
+    public boolean isTargetOf(@NonNull final StackEntry entry) {
+        return entry.targetEntryId == id;
+    }
+
+    /**
+     * Returns tag of target fragment in {@link FragmentManager}.
+     *
+     * @return Tag of target fragment or null if there is no target.
+     */
+    @Nullable
+    public String getTargetTag() {
+        return hasTarget() ? TAG_PREFIX + targetEntryId : null;
+    }
+
+    /**
+     * Returns saved state of fragment if fragment was removed from {@link FragmentManager}.
+     *
+     * @return Saved state or null.
+     */
+    @Nullable
+    public Fragment.SavedState getSavedState() {
+        return savedState;
+    }
+
+    /**
+     * Sets saved state of fragment when fragment is removing from {@link FragmentManager}.
+     *
+     * @param savedState Saved state or null.
+     */
+    public void setSavedState(@Nullable final Fragment.SavedState savedState) {
+        this.savedState = savedState;
+    }
+
+    /**
+     * Returns ID of state of {@link ru.touchin.roboswag.components.navigation.fragments.ViewControllerFragment} which is kept in saved state
+     * so state stored by {@link StateStorage} could be removed if saved state is discarded.
+     *
+     * @return ID of state or null.
+     */
+    @Nullable
+    public String getStateId() {
+        return stateId;
+    }
+
+    /**
+     * Sets ID of state of fragment when fragment is removing from {@link FragmentManager}.
+     *
+     * @param stateId ID of state or null.
+     */
+    public void setStateId(@Nullable final String stateId) {
+        this.stateId = stateId;
+    }
+
+    /**
+     * Returns size of descriptor (including arguments and saved state) in bytes when it is written into {@link Parcel}.
+     * Memory of live fragment is not included.
+     *
+     * @return Size in bytes.
+     */
+    public int measureSize() {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            writeToParcel(parcel, 0);
+            parcel.writeParcelable(savedState, 0);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Nullable
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getBreadCrumbTitleRes() {
+        return 0;
+    }
+
+    @Override
+    public int getBreadCrumbShortTitleRes() {
+        return 0;
+    }
+
+    @Nullable
+    @Override
+    public CharSequence getBreadCrumbTitle() {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public CharSequence getBreadCrumbShortTitle() {
+        return null;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull final Parcel dest, final int flags) {
+        dest.writeInt(id);
+        dest.writeString(fragmentClassName);
+        dest.writeBundle(args);
+        dest.writeString(name);
+        dest.writeInt(targetEntryId);
+        dest.writeString(stateId);
+    }
+
+}
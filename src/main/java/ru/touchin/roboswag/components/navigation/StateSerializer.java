@@ -0,0 +1,452 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.navigation;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.touchin.roboswag.components.utils.UiUtils;
+import ru.touchin.roboswag.core.utils.ShouldNotHappenException;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Utilities to put {@link AbstractState} into {@link Bundle} and to convert it into bytes.
+ * If state implements {@link Parcelable} then it is stored as parcelable which is much faster and smaller than Java serialization,
+ * else it is stored as {@link java.io.Serializable}.
+ * Also it is collecting statistics of serialized size and time per state class every time state is converted into bytes.
+ */
+public final class StateSerializer {
+
+    @NonNull
+    private static final ConcurrentHashMap<Class<? extends AbstractState>, Statistics> STATISTICS = new ConcurrentHashMap<>();
+    @NonNull
+    private static final AtomicLong SNAPSHOT_HITS = new AtomicLong();
+    @NonNull
+    private static final AtomicLong SNAPSHOT_MISSES = new AtomicLong();
+
+    /**
+     * Puts state into {@link Bundle} as {@link Parcelable} if it supports it or as {@link java.io.Serializable} otherwise.
+     *
+     * @param bundle Bundle to put state into;
+     * @param key    Key of state in bundle;
+     * @param state  State to put.
+     */
+    public static void put(@NonNull final Bundle bundle, @NonNull final String key, @Nullable final AbstractState state) {
+        if (state instanceof Parcelable) {
+            bundle.putParcelable(key, (Parcelable) state);
+        } else {
+            bundle.putSerializable(key, state);
+        }
+    }
+
+    /**
+     * Puts serialized form of state into {@link Bundle}.
+     * If state is tracking it's changes (see {@link AbstractState#isDirtyTrackingEnabled()}) and have not changed since last call
+     * then cached serialized form is reused.
+     *
+     * @param bundle Bundle to put state into;
+     * @param key    Key of state in bundle;
+     * @param state  State to put.
+     */
+    public static void putSnapshot(@NonNull final Bundle bundle, @NonNull final String key, @Nullable final AbstractState state) {
+        if (state != null && state.isDirtyTrackingEnabled()) {
+            bundle.putByteArray(key, snapshot(state));
+        } else {
+            put(bundle, key, state);
+        }
+    }
+
+    /**
+     * Returns serialized form of state. If state is tracking it's changes and have not changed since last call then cached form is returned.
+     *
+     * @param state State to serialize;
+     * @return Bytes of state.
+     */
+    @NonNull
+    public static byte[] snapshot(@NonNull final AbstractState state) {
+        if (state.isDirtyTrackingEnabled()) {
+            final byte[] cachedSnapshot = state.getSnapshot();
+            if (cachedSnapshot != null) {
+                SNAPSHOT_HITS.incrementAndGet();
+                return cachedSnapshot;
+            }
+            SNAPSHOT_MISSES.incrementAndGet();
+        }
+        final byte[] result = marshall(state);
+        if (state.isDirtyTrackingEnabled()) {
+            state.setSnapshot(result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns how many times cached serialized form of state have been reused by {@link #snapshot(AbstractState)}.
+     *
+     * @return Count of cache hits.
+     */
+    public static long getSnapshotHits() {
+        return SNAPSHOT_HITS.get();
+    }
+
+    /**
+     * Returns how many times state with dirty tracking have been serialized again by {@link #snapshot(AbstractState)}.
+     *
+     * @return Count of cache misses.
+     */
+    public static long getSnapshotMisses() {
+        return SNAPSHOT_MISSES.get();
+    }
+
+    /**
+     * Gets state from {@link Bundle} which was put by {@link #put(Bundle, String, AbstractState)} or by {@link #putSnapshot}.
+     *
+     * @param bundle Bundle to get state from;
+     * @param key    Key of state in bundle;
+     * @param <T>    Type of state;
+     * @return State or null if there is no state in bundle.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public static <T extends AbstractState> T get(@NonNull final Bundle bundle, @NonNull final String key) {
+        final Object value = bundle.get(key);
+        if (value instanceof byte[]) {
+            return unmarshall((byte[]) value);
+        }
+        if (value != null && !(value instanceof AbstractState)) {
+            throw new ShouldNotHappenException("Value by key " + key + " is not a state: " + value.getClass());
+        }
+        return (T) value;
+    }
+
+    /**
+     * Converts state into bytes using {@link Parcel}. Serialized size and time are added to {@link #getStatistics()}.
+     *
+     * @param state State to convert;
+     * @return Bytes of state.
+     */
+    @NonNull
+    public static byte[] marshall(@NonNull final AbstractState state) {
+        final long startTime = System.nanoTime();
+        final byte[] result = writeValue(state);
+        getStatistics(state.getClass()).onSerialized(result.length, System.nanoTime() - startTime);
+        return result;
+    }
+
+    @NonNull
+    private static byte[] writeValue(@NonNull final AbstractState state) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeValue(state);
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Restores state from bytes created by {@link #marshall(AbstractState)}.
+     *
+     * @param bytes  Bytes of state;
+     * @param offset Offset of state in bytes;
+     * @param length Length of state in bytes;
+     * @param <T>    Type of state;
+     * @return Restored state.
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public static <T extends AbstractState> T unmarshall(@NonNull final byte[] bytes, final int offset, final int length) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(bytes, offset, length);
+            parcel.setDataPosition(0);
+            final Object result = parcel.readValue(AbstractState.class.getClassLoader());
+            if (!(result instanceof AbstractState)) {
+                throw new ShouldNotHappenException("Bytes are not representing state: " + result);
+            }
+            return (T) result;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Restores state from bytes created by {@link #marshall(AbstractState)}.
+     *
+     * @param bytes Bytes of state;
+     * @param <T>   Type of state;
+     * @return Restored state.
+     */
+    @NonNull
+    public static <T extends AbstractState> T unmarshall(@NonNull final byte[] bytes) {
+        return unmarshall(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Makes full round-trip of state through bytes. Useful in debug mode to check that state is restorable.
+     *
+     * @param state State to reserialize;
+     * @param <T>   Type of state;
+     * @return Copy of state.
+     */
+    @NonNull
+    public static <T extends AbstractState> T reserialize(@NonNull final T state) {
+        return unmarshall(marshall(state));
+    }
+
+    /**
+     * Returns collected statistics per state class sorted by maximum serialized size descending.
+     *
+     * @return List of statistics.
+     */
+    @NonNull
+    public static List<Statistics> getStatistics() {
+        final List<Statistics> result = new ArrayList<>(STATISTICS.values());
+        Collections.sort(result, (first, second) -> compare(second.getMaxSize(), first.getMaxSize()));
+        return result;
+    }
+
+    private static int compare(final long first, final long second) {
+        return first < second ? -1 : (first == second ? 0 : 1);
+    }
+
+    @NonNull
+    private static Statistics getStatistics(@NonNull final Class<? extends AbstractState> stateClass) {
+        Statistics result = STATISTICS.get(stateClass);
+        if (result == null) {
+            result = new Statistics(stateClass);
+            final Statistics previous = STATISTICS.putIfAbsent(stateClass, result);
+            if (previous != null) {
+                result = previous;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compares speed and size of saving state as {@link Parcelable} (if it supports it) and as {@link java.io.Serializable}.
+     * Result is also logging into {@link UiUtils#UI_METRICS_LC_GROUP}.
+     *
+     * @param state      State to benchmark;
+     * @param iterations Count of round-trips for each method;
+     * @return Result of benchmark.
+     */
+    @NonNull
+    public static BenchmarkResult benchmark(@NonNull final AbstractState state, final int iterations) {
+        long parcelableTime = 0;
+        int parcelableSize = 0;
+        if (state instanceof Parcelable) {
+            final long startTime = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                final byte[] bytes = writeValue(state);
+                readValue(bytes, false);
+                parcelableSize = bytes.length;
+            }
+            parcelableTime = (System.nanoTime() - startTime) / iterations;
+        }
+        int serializableSize = 0;
+        final long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            final Parcel parcel = Parcel.obtain();
+            parcel.writeSerializable(state);
+            final byte[] bytes = parcel.marshall();
+            parcel.recycle();
+            readValue(bytes, true);
+            serializableSize = bytes.length;
+        }
+        final long serializableTime = (System.nanoTime() - startTime) / iterations;
+        final BenchmarkResult result = new BenchmarkResult(state.getClass(), parcelableTime, parcelableSize, serializableTime, serializableSize);
+        UiUtils.UI_METRICS_LC_GROUP.i("State benchmark: %s", result);
+        return result;
+    }
+
+    // reads bytes written by Parcel.writeSerializable() if serializable is true or by Parcel.writeValue() otherwise
+    private static void readValue(@NonNull final byte[] bytes, final boolean serializable) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(bytes, 0, bytes.length);
+            parcel.setDataPosition(0);
+            if (serializable) {
+                parcel.readSerializable();
+            } else {
+                parcel.readValue(AbstractState.class.getClassLoader());
+            }
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private StateSerializer() {
+    }
+
+    /**
+     * Statistics of serialization of specific state class.
+     */
+    public static class Statistics {
+
+        @NonNull
+        private final Class<? extends AbstractState> stateClass;
+        private int count;
+        private long totalSize;
+        private int maxSize;
+        private long totalTimeNanos;
+
+        private Statistics(@NonNull final Class<? extends AbstractState> stateClass) {
+            this.stateClass = stateClass;
+        }
+
+        private synchronized void onSerialized(final int size, final long timeNanos) {
+            count++;
+            totalSize += size;
+            maxSize = Math.max(maxSize, size);
+            totalTimeNanos += timeNanos;
+        }
+
+        /**
+         * Returns class of state.
+         *
+         * @return Class of state.
+         */
+        @NonNull
+        public Class<? extends AbstractState> getStateClass() {
+            return stateClass;
+        }
+
+        /**
+         * Returns how many times state of such class have been serialized.
+         *
+         * @return Count of serializations.
+         */
+        public synchronized int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns average serialized size in bytes.
+         *
+         * @return Average size.
+         */
+        public synchronized long getAverageSize() {
+            return count > 0 ? totalSize / count : 0;
+        }
+
+        /**
+         * Returns maximum serialized size in bytes.
+         *
+         * @return Maximum size.
+         */
+        public synchronized int getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * Returns average serialization time in nanoseconds.
+         *
+         * @return Average time.
+         */
+        public synchronized long getAverageTimeNanos() {
+            return count > 0 ? totalTimeNanos / count : 0;
+        }
+
+        @NonNull
+        @Override
+        public synchronized String toString() {
+            return stateClass.getName() + ": count=" + count + ", avgSize=" + getAverageSize() + ", maxSize=" + maxSize
+                    + ", avgTime=" + getAverageTimeNanos() + "ns";
+        }
+
+    }
+
+    /**
+     * Result of {@link #benchmark(AbstractState, int)}.
+     */
+    public static class BenchmarkResult {
+
+        @NonNull
+        private final Class<? extends AbstractState> stateClass;
+        private final long parcelableTimeNanos;
+        private final int parcelableSize;
+        private final long serializableTimeNanos;
+        private final int serializableSize;
+
+        private BenchmarkResult(@NonNull final Class<? extends AbstractState> stateClass,
+                                final long parcelableTimeNanos, final int parcelableSize,
+                                final long serializableTimeNanos, final int serializableSize) {
+            this.stateClass = stateClass;
+            this.parcelableTimeNanos = parcelableTimeNanos;
+            this.parcelableSize = parcelableSize;
+            this.serializableTimeNanos = serializableTimeNanos;
+            this.serializableSize = serializableSize;
+        }
+
+        /**
+         * Returns average round-trip time as {@link Parcelable} in nanoseconds. It is 0 if state is not {@link Parcelable}.
+         *
+         * @return Time of round-trip.
+         */
+        public long getParcelableTimeNanos() {
+            return parcelableTimeNanos;
+        }
+
+        /**
+         * Returns size of state saved as {@link Parcelable} in bytes. It is 0 if state is not {@link Parcelable}.
+         *
+         * @return Size in bytes.
+         */
+        public int getParcelableSize() {
+            return parcelableSize;
+        }
+
+        /**
+         * Returns average round-trip time as {@link java.io.Serializable} in nanoseconds.
+         *
+         * @return Time of round-trip.
+         */
+        public long getSerializableTimeNanos() {
+            return serializableTimeNanos;
+        }
+
+        /**
+         * Returns size of state saved as {@link java.io.Serializable} in bytes.
+         *
+         * @return Size in bytes.
+         */
+        public int getSerializableSize() {
+            return serializableSize;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return stateClass.getName() + ": parcelable=" + parcelableTimeNanos + "ns/" + parcelableSize + "b, serializable="
+                    + serializableTimeNanos + "ns/" + serializableSize + "b";
+        }
+
+    }
+
+}
@@ -0,0 +1,325 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.navigation;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ru.touchin.roboswag.components.utils.UiUtils;
+import ru.touchin.roboswag.core.log.Lc;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Storage of {@link AbstractState}s which are saving into {@link Bundle} at {@link android.support.v4.app.Fragment#onSaveInstanceState(Bundle)}.
+ * It is measuring serialized size of every state: small states are keeping inline in bundle as bytes,
+ * states bigger than inline size limit are moving to files in specific directory so only token is keeping in bundle.
+ * It helps to avoid {@link android.os.TransactionTooLargeException} when activity is saving it's state.
+ * Files are kept in files directory of application as cache directory could be cleared by system while process is dead
+ * and that is exactly when states are needed. Tokens of stored files are registered in index file until owner is removing state
+ * by {@link #remove(String)} or state is saving inline again. If there are more files than limit then files which are not registered
+ * (e.g. left after failed deletion) are removing first and then least recently used registered files (e.g. of task killed by system
+ * or of activity which was never restored). State of evicted file is restored as null like if it was never saved.
+ */
+public class StateStorage {
+
+    private static final int DEFAULT_INLINE_SIZE_LIMIT = 50 * 1024;
+    private static final int DEFAULT_MAX_FILES_COUNT = 64;
+    private static final String STATES_DIRECTORY = "view_controller_states";
+    private static final String TOKEN_SUFFIX = "_TOKEN";
+    private static final String INDEX_FILE_NAME = ".index";
+    private static final String INDEX_CHARSET = "UTF-8";
+
+    @NonNull
+    private final File directory;
+    private final int inlineSizeLimit;
+    private final int maxFilesCount;
+    @Nullable
+    private Set<String> registeredTokens;
+
+    /**
+     * Creates storage in files directory of application with default limits.
+     *
+     * @param context Context of application.
+     */
+    public StateStorage(@NonNull final Context context) {
+        this(new File(context.getFilesDir(), STATES_DIRECTORY), DEFAULT_INLINE_SIZE_LIMIT, DEFAULT_MAX_FILES_COUNT);
+    }
+
+    /**
+     * Creates storage.
+     *
+     * @param directory       Directory to store oversized states in. It should not be cleared by system (so not cache directory);
+     * @param inlineSizeLimit Maximum size in bytes of state which could be stored inline in bundle;
+     * @param maxFilesCount   Maximum count of files with states in directory. If it is exceeded then least recently used files are removing
+     *                        even if their states are still registered.
+     */
+    public StateStorage(@NonNull final File directory, final int inlineSizeLimit, final int maxFilesCount) {
+        this.directory = directory;
+        this.inlineSizeLimit = inlineSizeLimit;
+        this.maxFilesCount = maxFilesCount;
+    }
+
+    /**
+     * Saves state into bundle: inline if it is small enough or into file otherwise.
+     *
+     * @param bundle  Bundle to save state into;
+     * @param key     Key of state in bundle;
+     * @param ownerId Unique and persistent ID of owner of state (like fragment) to name file of state;
+     * @param state   State to save.
+     */
+    public void save(@NonNull final Bundle bundle, @NonNull final String key, @NonNull final String ownerId, @Nullable final AbstractState state) {
+        if (state == null) {
+            return;
+        }
+        saveBytes(bundle, key, ownerId, StateSerializer.snapshot(state), state.getClass().getName());
+    }
+
+    /**
+     * Saves any serialized state (e.g. marshalled {@link android.os.Parcelable}) into bundle: inline if it is small enough or into file otherwise.
+     *
+     * @param bundle  Bundle to save bytes into;
+     * @param key     Key of bytes in bundle;
+     * @param ownerId Unique and persistent ID of owner of state to name file of state;
+     * @param bytes   Bytes to save.
+     */
+    public void saveBytes(@NonNull final Bundle bundle, @NonNull final String key, @NonNull final String ownerId, @NonNull final byte[] bytes) {
+        saveBytes(bundle, key, ownerId, bytes, ownerId);
+    }
+
+    private void saveBytes(@NonNull final Bundle bundle, @NonNull final String key, @NonNull final String ownerId,
+                           @NonNull final byte[] bytes, @NonNull final String stateName) {
+        if (bytes.length <= inlineSizeLimit) {
+            bundle.putByteArray(key, bytes);
+            removeStoredFile(ownerId);
+            return;
+        }
+        UiUtils.UI_METRICS_LC_GROUP.w("State %s of size %d bytes is moving to disk", stateName, bytes.length);
+        try {
+            writeFile(ownerId, bytes);
+            bundle.putString(key + TOKEN_SUFFIX, ownerId);
+        } catch (final IOException exception) {
+            Lc.assertion(exception);
+            bundle.putByteArray(key, bytes);
+        }
+    }
+
+    /**
+     * Restores state from bundle which was saved by {@link #save(Bundle, String, String, AbstractState)}.
+     * Also it is able to restore state put by {@link StateSerializer#put(Bundle, String, AbstractState)} or {@link StateSerializer#putSnapshot}.
+     *
+     * @param bundle Bundle to restore state from;
+     * @param key    Key of state in bundle;
+     * @param <T>    Type of state;
+     * @return Restored state or null.
+     */
+    @Nullable
+    public <T extends AbstractState> T restore(@NonNull final Bundle bundle, @NonNull final String key) {
+        if (bundle.containsKey(key + TOKEN_SUFFIX)) {
+            final byte[] bytes = restoreBytes(bundle, key);
+            return bytes != null ? StateSerializer.<T>unmarshall(bytes) : null;
+        }
+        return StateSerializer.get(bundle, key);
+    }
+
+    /**
+     * Restores bytes from bundle which were saved by {@link #saveBytes(Bundle, String, String, byte[])}.
+     *
+     * @param bundle Bundle to restore bytes from;
+     * @param key    Key of bytes in bundle;
+     * @return Restored bytes or null if there are no bytes or their file is evicted.
+     */
+    @Nullable
+    public byte[] restoreBytes(@NonNull final Bundle bundle, @NonNull final String key) {
+        final String token = bundle.getString(key + TOKEN_SUFFIX);
+        if (token == null) {
+            return bundle.getByteArray(key);
+        }
+        final File file = getFile(token);
+        if (!file.exists()) {
+            UiUtils.UI_METRICS_LC_GROUP.w("State file %s is evicted", token);
+            return null;
+        }
+        try {
+            final byte[] bytes = readFile(file);
+            file.setLastModified(System.currentTimeMillis());
+            return bytes;
+        } catch (final IOException exception) {
+            Lc.assertion(exception);
+            return null;
+        }
+    }
+
+    /**
+     * Removes stored file of state if it exists. Call it when owner of state is destroying forever.
+     *
+     * @param ownerId ID of owner of state.
+     */
+    public synchronized void remove(@NonNull final String ownerId) {
+        final File file = getFile(ownerId);
+        if (file.exists() && !file.delete()) {
+            Lc.assertion("Can't delete state file " + file);
+        }
+        if (getRegisteredTokens().remove(ownerId)) {
+            writeIndex();
+        }
+    }
+
+    /**
+     * Returns statistics of states sorted by maximum serialized size so first item is the largest state.
+     *
+     * @return List of statistics.
+     */
+    @NonNull
+    public List<StateSerializer.Statistics> getLargestStates() {
+        return StateSerializer.getStatistics();
+    }
+
+    // previous state of owner could be stored in file
+    private synchronized void removeStoredFile(@NonNull final String ownerId) {
+        if (getRegisteredTokens().contains(ownerId)) {
+            remove(ownerId);
+        }
+    }
+
+    @NonNull
+    private File getFile(@NonNull final String ownerId) {
+        return new File(directory, ownerId);
+    }
+
+    private synchronized void writeFile(@NonNull final String ownerId, @NonNull final byte[] bytes) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Can't create directory " + directory);
+        }
+        final FileOutputStream outputStream = new FileOutputStream(getFile(ownerId));
+        try {
+            outputStream.write(bytes);
+        } finally {
+            outputStream.close();
+        }
+        if (getRegisteredTokens().add(ownerId)) {
+            writeIndex();
+        }
+        trimFiles();
+    }
+
+    @NonNull
+    private byte[] readFile(@NonNull final File file) throws IOException {
+        final byte[] result = new byte[(int) file.length()];
+        final DataInputStream inputStream = new DataInputStream(new FileInputStream(file));
+        try {
+            inputStream.readFully(result);
+        } finally {
+            inputStream.close();
+        }
+        return result;
+    }
+
+    @NonNull
+    private Set<String> getRegisteredTokens() {
+        if (registeredTokens == null) {
+            registeredTokens = new HashSet<>();
+            final File indexFile = new File(directory, INDEX_FILE_NAME);
+            if (indexFile.exists()) {
+                try {
+                    for (final String token : new String(readFile(indexFile), INDEX_CHARSET).split("\n")) {
+                        if (!token.isEmpty()) {
+                            registeredTokens.add(token);
+                        }
+                    }
+                } catch (final IOException exception) {
+                    Lc.assertion(exception);
+                }
+            }
+        }
+        return registeredTokens;
+    }
+
+    private void writeIndex() {
+        final StringBuilder index = new StringBuilder();
+        for (final String token : getRegisteredTokens()) {
+            index.append(token).append('\n');
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            Lc.assertion("Can't create directory " + directory);
+            return;
+        }
+        try {
+            final FileOutputStream outputStream = new FileOutputStream(new File(directory, INDEX_FILE_NAME));
+            try {
+                outputStream.write(index.toString().getBytes(INDEX_CHARSET));
+            } finally {
+                outputStream.close();
+            }
+        } catch (final IOException exception) {
+            Lc.assertion(exception);
+        }
+    }
+
+    private void trimFiles() {
+        final File[] files = directory.listFiles((dir, name) -> !INDEX_FILE_NAME.equals(name));
+        if (files == null || files.length <= maxFilesCount) {
+            return;
+        }
+        Arrays.sort(files, (first, second) -> Long.valueOf(first.lastModified()).compareTo(second.lastModified()));
+        // files which are not referenced by saved bundles anymore are removing first, then least recently used ones
+        final int filesCount = deleteFiles(files, files.length, false);
+        if (filesCount > maxFilesCount) {
+            UiUtils.UI_METRICS_LC_GROUP.w("There are %d stored states which are more than limit %d, evicting oldest", filesCount, maxFilesCount);
+            deleteFiles(files, filesCount, true);
+        }
+    }
+
+    private int deleteFiles(@NonNull final File[] files, final int filesCount, final boolean registered) {
+        int result = filesCount;
+        for (final File file : files) {
+            if (result <= maxFilesCount) {
+                break;
+            }
+            if (getRegisteredTokens().contains(file.getName()) != registered) {
+                continue;
+            }
+            if (file.delete()) {
+                result--;
+                if (registered) {
+                    getRegisteredTokens().remove(file.getName());
+                }
+            } else {
+                Lc.assertion("Can't delete state file " + file);
+            }
+        }
+        if (registered && result < filesCount) {
+            writeIndex();
+        }
+        return result;
+    }
+
+}
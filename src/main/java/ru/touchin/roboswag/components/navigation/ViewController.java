@@ -40,6 +40,7 @@ import android.view.ViewGroup;
 import ru.touchin.roboswag.components.navigation.activities.ViewControllerActivity;
 import ru.touchin.roboswag.components.navigation.fragments.ViewControllerFragment;
 import ru.touchin.roboswag.components.utils.BaseLifecycleBindable;
+import ru.touchin.roboswag.components.utils.LayoutPool;
 import ru.touchin.roboswag.components.utils.LifecycleBindable;
 import ru.touchin.roboswag.components.utils.UiUtils;
 import ru.touchin.roboswag.core.log.Lc;
@@ -146,6 +147,7 @@ public class ViewController<TActivity extends ViewControllerActivity<?>,
     /**
      * Set the view controller content from a layout resource.
      * This layout is placed directly into the container's ({@link #getContainer()}) view hierarchy.
+     * If activity's {@link ViewControllerActivity#getLayoutPool()} have inflated view of such layout then it is used instead of inflation.
      *
      * @param layoutResId Resource ID to be inflated.
      */
@@ -153,7 +155,13 @@ public class ViewController<TActivity extends ViewControllerActivity<?>,
         if (getContainer().getChildCount() > 0) {
             getContainer().removeAllViews();
         }
-        UiUtils.inflateAndAdd(layoutResId, getContainer());
+        final LayoutPool layoutPool = getActivity().peekLayoutPool();
+        final View pooledView = layoutPool != null ? layoutPool.obtain(layoutResId) : null;
+        if (pooledView != null) {
+            getContainer().addView(pooledView);
+        } else {
+            UiUtils.inflateAndAdd(layoutResId, getContainer());
+        }
     }
 
     /**
@@ -271,6 +279,16 @@ public class ViewController<TActivity extends ViewControllerActivity<?>,
         baseLifecycleBindable.onResume();
     }
 
+    /**
+     * Calls when retained {@link ViewController} (see {@link ViewControllerFragment#setViewControllerRetaining()}) is reused
+     * with it's views after fragment's view have been recreated. Views are the same but they are attached to new parent
+     * so rebind here only things which depend on parent hierarchy (like window insets or listeners of parent views).
+     * Happens at {@link ViewControllerFragment#onViewCreated(View, Bundle)}.
+     */
+    public void onViewReattached() {
+        UiUtils.UI_LIFECYCLE_LC_GROUP.i(Lc.getCodePoint(this));
+    }
+
     /**
      * Calls when {@link ViewController} have goes near out of memory state.
      * Happens at {@link ViewControllerFragment#onLowMemory()}.
@@ -280,6 +298,20 @@ public class ViewController<TActivity extends ViewControllerActivity<?>,
         //do nothing
     }
 
+    /**
+     * Calls when system asks to trim memory. Release caches, bitmaps etc. which could be restored later.
+     * If fragment of {@link ViewController} is not showing to user and level is high enough
+     * (see {@link ViewControllerFragment#setTrimMemoryTearDownLevel(int)}) then {@link ViewController} will be destroyed after that call
+     * and created again from state when it is needed.
+     * Happens at {@link ViewControllerFragment#onTrimMemory(int)}.
+     *
+     * @param level Level of trimming like {@link android.content.ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW};
+     * @return Approximate count of freed bytes.
+     */
+    public long onTrimMemory(final int level) {
+        return 0;
+    }
+
     /**
      * Calls when {@link ViewController} have paused.
      * Happens at {@link ViewControllerFragment#onPause(View, ViewControllerActivity)}.
@@ -0,0 +1,376 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.navigation;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Sampled performance metrics of {@link ViewController}s which are safe to collect in release builds.
+ * Only part of screens (see {@link #setSamplingRate(float)}) are measured so overhead of not sampled screens is single flag check.
+ * Every metric of every {@link ViewController} class is collected into {@link Histogram} with fixed buckets
+ * so memory is not growing with count of records. Records could be sent to analytics via {@link Listener}.
+ */
+public final class ViewControllerMetrics {
+
+    @NonNull
+    private static final ConcurrentHashMap<String, Histogram[]> HISTOGRAMS = new ConcurrentHashMap<>();
+    @NonNull
+    private static final ConcurrentHashMap<String, AtomicLong> RECREATIONS = new ConcurrentHashMap<>();
+    @NonNull
+    private static final ConcurrentHashMap<String, AtomicLong> RETAINS = new ConcurrentHashMap<>();
+    @NonNull
+    private static final Random RANDOM = new Random();
+
+    private static volatile float samplingRate;
+    @Nullable
+    private static volatile Listener listener;
+
+    /**
+     * Sets part of screens to measure from 0 (nothing, by default) to 1 (every screen).
+     *
+     * @param samplingRate Part of screens to measure.
+     */
+    public static void setSamplingRate(final float samplingRate) {
+        ViewControllerMetrics.samplingRate = Math.max(0, Math.min(1, samplingRate));
+    }
+
+    /**
+     * Sets listener which is called on every record.
+     *
+     * @param listener Listener or null.
+     */
+    public static void setListener(@Nullable final Listener listener) {
+        ViewControllerMetrics.listener = listener;
+    }
+
+    /**
+     * Decides if screen should be measured. Call it once when screen is creating.
+     *
+     * @return True if screen should be measured.
+     */
+    public static boolean shouldSample() {
+        final float rate = samplingRate;
+        return rate > 0 && (rate >= 1 || RANDOM.nextFloat() < rate);
+    }
+
+    /**
+     * Records value of metric of specific {@link ViewController} class.
+     *
+     * @param viewControllerClass Class of {@link ViewController};
+     * @param metric              Metric to record;
+     * @param valueMillis         Value in milliseconds.
+     */
+    public static void record(@NonNull final Class<?> viewControllerClass, @NonNull final Metric metric, final long valueMillis) {
+        final String viewControllerName = viewControllerClass.getName();
+        Histogram[] histograms = HISTOGRAMS.get(viewControllerName);
+        if (histograms == null) {
+            final Histogram[] newHistograms = new Histogram[Metric.values().length];
+            for (final Metric newMetric : Metric.values()) {
+                newHistograms[newMetric.ordinal()] = new Histogram(viewControllerName, newMetric);
+            }
+            histograms = HISTOGRAMS.putIfAbsent(viewControllerName, newHistograms);
+            if (histograms == null) {
+                histograms = newHistograms;
+            }
+        }
+        final Histogram histogram = histograms[metric.ordinal()];
+        histogram.record(valueMillis);
+        final Listener currentListener = listener;
+        if (currentListener != null) {
+            currentListener.onRecorded(histogram, valueMillis);
+        }
+    }
+
+    /**
+     * Returns histogram of metric of specific {@link ViewController} class.
+     *
+     * @param viewControllerClass Class of {@link ViewController};
+     * @param metric              Metric;
+     * @return Histogram or null if there were no records.
+     */
+    @Nullable
+    public static Histogram getHistogram(@NonNull final Class<?> viewControllerClass, @NonNull final Metric metric) {
+        final Histogram[] histograms = HISTOGRAMS.get(viewControllerClass.getName());
+        return histograms != null ? histograms[metric.ordinal()] : null;
+    }
+
+    /**
+     * Returns all histograms with records.
+     *
+     * @return List of histograms.
+     */
+    @NonNull
+    public static List<Histogram> getHistograms() {
+        final List<Histogram> result = new ArrayList<>();
+        for (final Histogram[] histograms : HISTOGRAMS.values()) {
+            for (final Histogram histogram : histograms) {
+                if (histogram.getCount() > 0) {
+                    result.add(histogram);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts creation of {@link ViewController} for fragment which already had {@link ViewController} before.
+     * It is counting for every screen, not only sampled ones.
+     *
+     * @param viewControllerClass Class of {@link ViewController}.
+     */
+    public static void recordRecreation(@NonNull final Class<?> viewControllerClass) {
+        increment(RECREATIONS, viewControllerClass);
+    }
+
+    /**
+     * Counts reusing of retained {@link ViewController} with it's views instead of it's recreation.
+     * It is counting for every screen, not only sampled ones.
+     *
+     * @param viewControllerClass Class of {@link ViewController}.
+     */
+    public static void recordRetain(@NonNull final Class<?> viewControllerClass) {
+        increment(RETAINS, viewControllerClass);
+    }
+
+    /**
+     * Returns how many times {@link ViewController}s of specific class were recreated.
+     *
+     * @param viewControllerClass Class of {@link ViewController};
+     * @return Count of recreations.
+     */
+    public static long getRecreationsCount(@NonNull final Class<?> viewControllerClass) {
+        final AtomicLong count = RECREATIONS.get(viewControllerClass.getName());
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Returns how many times {@link ViewController}s of specific class were reused instead of recreation.
+     *
+     * @param viewControllerClass Class of {@link ViewController};
+     * @return Count of reuses.
+     */
+    public static long getRetainsCount(@NonNull final Class<?> viewControllerClass) {
+        final AtomicLong count = RETAINS.get(viewControllerClass.getName());
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Removes all records.
+     */
+    public static void reset() {
+        HISTOGRAMS.clear();
+        RECREATIONS.clear();
+        RETAINS.clear();
+    }
+
+    private static void increment(@NonNull final ConcurrentHashMap<String, AtomicLong> counters, @NonNull final Class<?> viewControllerClass) {
+        AtomicLong count = counters.get(viewControllerClass.getName());
+        if (count == null) {
+            final AtomicLong newCount = new AtomicLong();
+            count = counters.putIfAbsent(viewControllerClass.getName(), newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private ViewControllerMetrics() {
+    }
+
+    /**
+     * Measured metrics of {@link ViewController}.
+     */
+    public enum Metric {
+        /**
+         * Time of {@link ViewController}'s constructor.
+         */
+        CREATION,
+        /**
+         * Time from start of {@link ViewController} creation to first draw of it's view.
+         */
+        FIRST_DRAW,
+        /**
+         * Time from measure to draw of {@link ViewController}'s view.
+         */
+        LAYOUT,
+        /**
+         * Time from start of fragment to it's appearing to user.
+         */
+        APPEAR_LATENCY,
+        /**
+         * Time from start of {@link FragmentNavigation#batch} to first draw of last screen of batch (or to commit if it's view is not created).
+         * It is recorded for last screen.
+         */
+        BATCH_TO_FINAL_SCREEN
+    }
+
+    /**
+     * Listener of records.
+     */
+    public interface Listener {
+
+        /**
+         * Calls on every record. Calls on thread of record which is main thread usually so it should be fast.
+         *
+         * @param histogram   Histogram which value was recorded into;
+         * @param valueMillis Recorded value in milliseconds.
+         */
+        void onRecorded(@NonNull Histogram histogram, long valueMillis);
+
+    }
+
+    /**
+     * Histogram of values of metric with fixed buckets in milliseconds.
+     */
+    public static class Histogram {
+
+        private static final long[] BUCKET_BOUNDS = {4, 8, 16, 33, 50, 100, 200, 500, 1000, 2000, Long.MAX_VALUE};
+
+        @NonNull
+        private final String viewControllerName;
+        @NonNull
+        private final Metric metric;
+        @NonNull
+        private final long[] counts = new long[BUCKET_BOUNDS.length];
+        private long count;
+        private long sum;
+        private long max;
+
+        private Histogram(@NonNull final String viewControllerName, @NonNull final Metric metric) {
+            this.viewControllerName = viewControllerName;
+            this.metric = metric;
+        }
+
+        private synchronized void record(final long valueMillis) {
+            int bucket = 0;
+            while (valueMillis >= BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            counts[bucket]++;
+            count++;
+            sum += valueMillis;
+            max = Math.max(max, valueMillis);
+        }
+
+        /**
+         * Returns class name of {@link ViewController}.
+         *
+         * @return Class name.
+         */
+        @NonNull
+        public String getViewControllerName() {
+            return viewControllerName;
+        }
+
+        /**
+         * Returns measured metric.
+         *
+         * @return Metric.
+         */
+        @NonNull
+        public Metric getMetric() {
+            return metric;
+        }
+
+        /**
+         * Returns exclusive upper bounds of buckets in milliseconds. Last bound is {@link Long#MAX_VALUE}.
+         *
+         * @return Bounds of buckets.
+         */
+        @NonNull
+        public long[] getBucketBounds() {
+            return Arrays.copyOf(BUCKET_BOUNDS, BUCKET_BOUNDS.length);
+        }
+
+        /**
+         * Returns counts of values in buckets.
+         *
+         * @return Counts of values.
+         */
+        @NonNull
+        public synchronized long[] getCounts() {
+            return Arrays.copyOf(counts, counts.length);
+        }
+
+        /**
+         * Returns count of recorded values.
+         *
+         * @return Count of values.
+         */
+        public synchronized long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns average value in milliseconds.
+         *
+         * @return Average value.
+         */
+        public synchronized long getAverage() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        /**
+         * Returns maximum value in milliseconds.
+         *
+         * @return Maximum value.
+         */
+        public synchronized long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns upper bound of bucket where specific percentile of values is. Last bucket is bounded by maximum value.
+         *
+         * @param percentile Percentile from 0 to 1;
+         * @return Approximate value of percentile in milliseconds.
+         */
+        public synchronized long getPercentile(final float percentile) {
+            final long targetCount = (long) Math.ceil(count * percentile);
+            long accumulatedCount = 0;
+            for (int i = 0; i < counts.length; i++) {
+                accumulatedCount += counts[i];
+                if (accumulatedCount >= targetCount && accumulatedCount > 0) {
+                    return Math.min(BUCKET_BOUNDS[i], max);
+                }
+            }
+            return max;
+        }
+
+        @NonNull
+        @Override
+        public synchronized String toString() {
+            return viewControllerName + ' ' + metric + ": count=" + count + " avg=" + getAverage() + "ms p90=" + getPercentile(0.9f)
+                    + "ms max=" + max + "ms";
+        }
+
+    }
+
+}
@@ -50,6 +50,13 @@ public class ViewControllerNavigation<TActivity extends ViewControllerActivity<?
         super(context, fragmentManager, containerViewId);
     }
 
+    public ViewControllerNavigation(@NonNull final Context context,
+                                    @NonNull final FragmentManager fragmentManager,
+                                    @IdRes final int containerViewId,
+                                    final int maxLiveBackStackEntries) {
+        super(context, fragmentManager, containerViewId, maxLiveBackStackEntries);
+    }
+
     /**
      * Pushes {@link ViewControllerFragment} on top of stack.
      *
@@ -21,10 +21,19 @@ package ru.touchin.roboswag.components.navigation.activities;
 
 import android.support.annotation.IdRes;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentManager;
 import android.view.Menu;
 import android.view.View;
 
+import java.util.List;
+
+import ru.touchin.roboswag.components.navigation.fragments.ViewControllerFragment;
+import ru.touchin.roboswag.components.utils.LayoutPool;
 import ru.touchin.roboswag.components.utils.Logic;
+import ru.touchin.roboswag.components.utils.UiUtils;
+import ru.touchin.roboswag.components.utils.images.BlurUtils;
 import ru.touchin.roboswag.core.utils.ShouldNotHappenException;
 
 /**
@@ -37,7 +46,10 @@ import ru.touchin.roboswag.core.utils.ShouldNotHappenException;
 public abstract class ViewControllerActivity<TLogic extends Logic> extends BaseActivity {
 
     //it is needed to hold strong reference to logic
-    private TLogic reference;
+    @Nullable
+    private volatile TLogic reference;
+    @Nullable
+    private LayoutPool layoutPool;
 
     /**
      * It should return specific class where all logic will be.
@@ -54,12 +66,38 @@ public abstract class ViewControllerActivity<TLogic extends Logic> extends BaseA
      */
     @NonNull
     public TLogic getLogic() {
-        synchronized (ViewControllerActivity.class) {
-            if (reference == null) {
-                reference = Logic.getInstance(this, getLogicClass());
-            }
+        TLogic result = reference;
+        if (result == null) {
+            // Logic.getInstance returns same instance for every thread so there is no need to lock here
+            result = Logic.getInstance(this, getLogicClass());
+            reference = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns (and creates if needed) pool of inflated layouts of this activity.
+     * Call {@link LayoutPool#prefill(int, int)} for layouts of frequently opened screens
+     * so {@link ru.touchin.roboswag.components.navigation.ViewController#setContentView(int)} will take them from pool.
+     *
+     * @return Pool of layouts.
+     */
+    @NonNull
+    public LayoutPool getLayoutPool() {
+        if (layoutPool == null) {
+            layoutPool = new LayoutPool(this);
         }
-        return reference;
+        return layoutPool;
+    }
+
+    /**
+     * Returns pool of inflated layouts if it was created.
+     *
+     * @return Pool of layouts or null.
+     */
+    @Nullable
+    public LayoutPool peekLayoutPool() {
+        return layoutPool;
     }
 
     @Override
@@ -101,6 +139,64 @@ public abstract class ViewControllerActivity<TLogic extends Logic> extends BaseA
         // do nothing
     }
 
+    @Override
+    public void onTrimMemory(final int level) {
+        super.onTrimMemory(level);
+        if (layoutPool != null && level >= TRIM_MEMORY_RUNNING_LOW) {
+            layoutPool.trim();
+        }
+        BlurUtils.onTrimMemory(level);
+        onMemoryTrimmed(level, trimFragments(getSupportFragmentManager(), level));
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        if (layoutPool != null) {
+            layoutPool.trim();
+        }
+        BlurUtils.onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (layoutPool != null) {
+            layoutPool.clear();
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * Calls after {@link ViewControllerFragment}s have trimmed memory at {@link #onTrimMemory(int)}.
+     * Logs freed memory by default.
+     *
+     * @param level      Level of trimming;
+     * @param freedBytes Upper bound of freed bytes (see {@link ViewControllerFragment#onTrimMemory(int)}).
+     */
+    protected void onMemoryTrimmed(final int level, final long freedBytes) {
+        UiUtils.UI_METRICS_LC_GROUP.i("Trim memory of level %d freed up to %d bytes", level, freedBytes);
+    }
+
+    private long trimFragments(@NonNull final FragmentManager fragmentManager, final int level) {
+        final List<Fragment> fragments = fragmentManager.getFragments();
+        if (fragments == null) {
+            return 0;
+        }
+        long result = 0;
+        for (final Fragment fragment : fragments) {
+            if (fragment == null) {
+                continue;
+            }
+            if (fragment instanceof ViewControllerFragment) {
+                result += ((ViewControllerFragment) fragment).onTrimMemory(level);
+            }
+            if (fragment.isAdded()) {
+                result += trimFragments(fragment.getChildFragmentManager(), level);
+            }
+        }
+        return result;
+    }
+
     @NonNull
     @Override
     public View findViewById(@IdRes final int id) {
@@ -19,10 +19,10 @@
 
 package ru.touchin.roboswag.components.navigation.fragments;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.os.Bundle;
-import android.os.Parcel;
 import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -35,12 +35,15 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
 
-import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.UUID;
 
 import ru.touchin.roboswag.components.navigation.AbstractState;
+import ru.touchin.roboswag.components.navigation.StateSerializer;
+import ru.touchin.roboswag.components.navigation.StateStorage;
 import ru.touchin.roboswag.components.navigation.ViewController;
+import ru.touchin.roboswag.components.navigation.ViewControllerMetrics;
 import ru.touchin.roboswag.components.navigation.activities.ViewControllerActivity;
 import ru.touchin.roboswag.components.utils.UiUtils;
 import ru.touchin.roboswag.core.log.Lc;
@@ -49,7 +52,9 @@ import ru.touchin.roboswag.core.utils.ShouldNotHappenException;
 import ru.touchin.roboswag.core.utils.pairs.NullablePair;
 import rx.Observable;
 import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
 import rx.exceptions.OnErrorThrowable;
+import rx.schedulers.Schedulers;
 import rx.subjects.BehaviorSubject;
 
 /**
@@ -64,9 +69,15 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
         extends ViewFragment<TActivity> {
 
     private static final String VIEW_CONTROLLER_STATE_EXTRA = "VIEW_CONTROLLER_STATE_EXTRA";
+    private static final String VIEW_CONTROLLER_STATE_ID_EXTRA = "VIEW_CONTROLLER_STATE_ID_EXTRA";
 
     private static boolean inDebugMode;
     private static long acceptableUiCalculationTime = 100;
+    @Nullable
+    private static StateStorage stateStorage;
+    private static boolean asyncStateRestoring;
+    private static int trimMemoryTearDownLevel = ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+    private static boolean viewControllerRetaining;
 
     /**
      * Enables debugging features like serialization of {@link #getState()} every creation.
@@ -77,26 +88,77 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
 
     /**
      * Sets acceptable UI calculation time so there will be warnings in logs if ViewController's inflate/layout actions will take more than that time.
-     * Works only if {@link #setInDebugMode()} called.
+     * Works only if {@link #setInDebugMode()} called. To measure screens in release builds use {@link ViewControllerMetrics}.
      * It's 100ms by default.
      */
     public static void setAcceptableUiCalculationTime(final long acceptableUiCalculationTime) {
         ViewControllerFragment.acceptableUiCalculationTime = acceptableUiCalculationTime;
     }
 
-    @SuppressWarnings("unchecked")
-    @NonNull
-    private static <T extends Serializable> T reserialize(@NonNull final T serializable) {
-        Parcel parcel = Parcel.obtain();
-        parcel.writeSerializable(serializable);
-        final byte[] serializableBytes = parcel.marshall();
-        parcel.recycle();
-        parcel = Parcel.obtain();
-        parcel.unmarshall(serializableBytes, 0, serializableBytes.length);
-        parcel.setDataPosition(0);
-        final T result = (T) parcel.readSerializable();
-        parcel.recycle();
-        return result;
+    /**
+     * Sets {@link StateStorage} which will measure size of states at {@link #onSaveInstanceState(Bundle)}
+     * and move oversized states out of {@link Bundle}. By default states are putting into {@link Bundle} directly.
+     *
+     * @param stateStorage Storage of states or null to put states directly into {@link Bundle}.
+     */
+    public static void setStateStorage(@Nullable final StateStorage stateStorage) {
+        ViewControllerFragment.stateStorage = stateStorage;
+    }
+
+    /**
+     * Returns {@link StateStorage} set by {@link #setStateStorage(StateStorage)}.
+     *
+     * @return Storage of states or null if states are putting into {@link Bundle} directly.
+     */
+    @Nullable
+    public static StateStorage getStateStorage() {
+        return stateStorage;
+    }
+
+    /**
+     * Removes state stored by {@link StateStorage} (if it is set) of fragment which will never be restored (e.g. it's saved state is discarded).
+     *
+     * @param stateId ID of state of fragment (see {@link #getStateId()}).
+     */
+    public static void removeStoredState(@NonNull final String stateId) {
+        if (stateStorage != null) {
+            stateStorage.remove(stateId);
+        }
+    }
+
+    /**
+     * Enables restoring of states from saved instance state on background threads in parallel.
+     * It is useful on restoring of deep back stacks after process death.
+     * {@link ViewController} will be created only after state restored; fragment which is showing to user waits for it's state in place.
+     * It makes sense only if states are saving as bytes: via {@link #setStateStorage(StateStorage)} or with enabled dirty tracking
+     * (see {@link AbstractState#isDirtyTrackingEnabled()}) as {@link java.io.Serializable} values are deserializing with whole {@link Bundle}.
+     * States are restoring on {@link Schedulers#computation()}. If restoring fails then fragment works like there was no saved state.
+     */
+    public static void setAsyncStateRestoring() {
+        asyncStateRestoring = true;
+    }
+
+    /**
+     * Sets level of {@link #onTrimMemory(int)} starting from which {@link ViewController}s of fragments that are not showing to user
+     * are destroying. They will be created again from state when fragment is starting or appearing.
+     * It's {@link ComponentCallbacks2#TRIM_MEMORY_MODERATE} by default.
+     *
+     * @param trimMemoryTearDownLevel Level of trimming like {@link ComponentCallbacks2#TRIM_MEMORY_BACKGROUND}.
+     */
+    public static void setTrimMemoryTearDownLevel(final int trimMemoryTearDownLevel) {
+        ViewControllerFragment.trimMemoryTearDownLevel = trimMemoryTearDownLevel;
+    }
+
+    /**
+     * Enables retaining of {@link ViewController} with it's views when fragment's view is destroying but fragment stays in same activity
+     * (e.g. detach/attach of fragment or fragments of ViewPager). In that case {@link ViewController} is stopped but not destroyed
+     * and it's views are reused at next creation of fragment's view so {@link ViewController#onViewReattached()} is called
+     * instead of creating new {@link ViewController} and inflating it's layout.
+     * Views are not rebound to new activity (e.g. after configuration change) even if configuration is compatible:
+     * they are inflated with context of old activity so reusing them would leak it and keep it's theme and resources.
+     */
+    public static void setViewControllerRetaining() {
+        viewControllerRetaining = true;
     }
 
     /**
@@ -108,7 +170,7 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
     @NonNull
     public static Bundle createState(@Nullable final AbstractState state) {
         final Bundle result = new Bundle();
-        result.putSerializable(VIEW_CONTROLLER_STATE_EXTRA, state);
+        StateSerializer.put(result, VIEW_CONTROLLER_STATE_EXTRA, state);
         return result;
     }
 
@@ -116,10 +178,27 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
     private final BehaviorSubject<Optional<TActivity>> activitySubject = BehaviorSubject.create();
     @NonNull
     private final BehaviorSubject<NullablePair<PlaceholderView, Bundle>> viewSubject = BehaviorSubject.create();
+    @NonNull
+    private final BehaviorSubject<Boolean> stateRestoredSubject = BehaviorSubject.create(false);
+    @NonNull
+    private final BehaviorSubject<Boolean> trimmedSubject = BehaviorSubject.create(false);
+    @Nullable
+    private Bundle trimmedViewControllerState;
+    @Nullable
+    private PlaceholderView retainedView;
+    private boolean viewControllerCreated;
     @Nullable
     private ViewController viewController;
     private Subscription viewControllerSubscription;
+    @Nullable
+    private Observable<Optional<TState>> pendingState;
+    @Nullable
+    private Subscription pendingStateSubscription;
     private TState state;
+    private String stateId;
+    private boolean stateSaved;
+    private boolean sampled;
+    private long startTime;
     private boolean started;
     private boolean stateCreated;
 
@@ -130,6 +209,16 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
         }
     }
 
+    /**
+     * Returns ID of state of fragment which is kept in saved instance state and used as name of file of state in {@link StateStorage}.
+     *
+     * @return ID of state or null if fragment is not created yet.
+     */
+    @Nullable
+    public String getStateId() {
+        return stateId;
+    }
+
     /**
      * Returns specific {@link AbstractState} which contains state of fragment and it's {@link ViewController}.
      *
@@ -137,6 +226,7 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
      */
     @NonNull
     public TState getState() {
+        awaitState();
         return state;
     }
 
@@ -162,27 +252,43 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
         super.onCreate(savedInstanceState);
 
         setHasOptionsMenu(!isChildFragment());
+        sampled = ViewControllerMetrics.shouldSample();
 
-        state = savedInstanceState != null
-                ? (TState) savedInstanceState.getSerializable(VIEW_CONTROLLER_STATE_EXTRA)
-                : (getArguments() != null ? (TState) getArguments().getSerializable(VIEW_CONTROLLER_STATE_EXTRA) : null);
-        if (state != null) {
-            if (inDebugMode) {
-                state = reserialize(state);
-            }
-            tryCreateState(getContext());
-        } else if (isStateRequired()) {
-            Lc.assertion("State is required and null");
+        stateId = savedInstanceState != null ? savedInstanceState.getString(VIEW_CONTROLLER_STATE_ID_EXTRA) : null;
+        if (stateId == null) {
+            stateId = UUID.randomUUID().toString();
+        }
+        if (savedInstanceState != null && asyncStateRestoring) {
+            // Bundle is not thread-safe so restoring thread gets it's own shallow copy: values of state (bytes or token) are not changing
+            final Bundle restoringBundle = new Bundle(savedInstanceState);
+            pendingState = Observable
+                    .fromCallable(() -> new Optional<>(prepareState(restoreState(restoringBundle))))
+                    .subscribeOn(Schedulers.computation())
+                    .cache();
+            pendingStateSubscription = pendingState
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(ignored -> awaitState(), throwable -> awaitState());
+        } else {
+            onStateRestored(prepareState(savedInstanceState != null
+                    ? restoreState(savedInstanceState)
+                    : (getArguments() != null ? StateSerializer.get(getArguments(), VIEW_CONTROLLER_STATE_EXTRA) : null)));
         }
         viewControllerSubscription = Observable
-                .combineLatest(activitySubject.distinctUntilChanged(), viewSubject.distinctUntilChanged(),
-                        (activityOptional, viewInfo) -> {
+                .combineLatest(activitySubject.distinctUntilChanged(), viewSubject.distinctUntilChanged(), stateRestoredSubject,
+                        trimmedSubject.distinctUntilChanged(),
+                        (activityOptional, viewInfo, stateRestored, trimmed) -> {
                             final TActivity activity = activityOptional.get();
                             final PlaceholderView container = viewInfo.getFirst();
-                            if (activity == null || container == null) {
+                            if (activity == null || container == null || !stateRestored || trimmed) {
                                 return null;
                             }
-                            final ViewController newViewController = createViewController(activity, container, viewInfo.getSecond());
+                            final ViewController newViewController = createViewController(activity, container,
+                                    trimmedViewControllerState != null ? trimmedViewControllerState : viewInfo.getSecond());
+                            trimmedViewControllerState = null;
+                            if (viewControllerCreated) {
+                                ViewControllerMetrics.recordRecreation(getViewControllerClass());
+                            }
+                            viewControllerCreated = true;
                             newViewController.onCreate();
                             return newViewController;
                         })
@@ -191,6 +297,45 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
                                 OnErrorThrowable.class, InvocationTargetException.class, InflateException.class));
     }
 
+    @Nullable
+    private TState prepareState(@Nullable final TState state) {
+        return state != null && inDebugMode ? StateSerializer.reserialize(state) : state;
+    }
+
+    private void onStateRestored(@Nullable final TState state) {
+        this.state = state;
+        if (state != null) {
+            tryCreateState(getContext());
+        } else if (isStateRequired()) {
+            Lc.assertion("State is required and null");
+        }
+        stateRestoredSubject.onNext(true);
+    }
+
+    private void awaitState() {
+        if (pendingState == null) {
+            return;
+        }
+        final Observable<Optional<TState>> restoringState = pendingState;
+        pendingState = null;
+        TState restoredState;
+        try {
+            restoredState = restoringState.toBlocking().single().get();
+        } catch (final RuntimeException exception) {
+            // fragment continues to work like there was no saved state
+            Lc.assertion(exception);
+            restoredState = null;
+        }
+        onStateRestored(restoredState);
+    }
+
+    @Nullable
+    private TState restoreState(@NonNull final Bundle savedInstanceState) {
+        return stateStorage != null
+                ? stateStorage.restore(savedInstanceState, VIEW_CONTROLLER_STATE_EXTRA)
+                : StateSerializer.get(savedInstanceState, VIEW_CONTROLLER_STATE_EXTRA);
+    }
+
     @NonNull
     private ViewController createViewController(@NonNull final TActivity activity, @NonNull final PlaceholderView view,
                                                 @Nullable final Bundle savedInstanceState) {
@@ -200,7 +345,10 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
         }
         final Constructor<?> constructor = getViewControllerClass().getConstructors()[0];
         final ViewController.CreationContext creationContext = new ViewController.CreationContext(activity, this, view);
-        final long creationTime = inDebugMode ? SystemClock.elapsedRealtime() : 0;
+        final long creationTime = inDebugMode || sampled ? SystemClock.elapsedRealtime() : 0;
+        if (sampled) {
+            view.startFirstDrawMeasure();
+        }
         try {
             switch (constructor.getParameterTypes().length) {
                 case 2:
@@ -219,11 +367,15 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
     }
 
     private void checkCreationTime(final long creationTime) {
-        if (inDebugMode) {
-            final long creationPeriod = SystemClock.elapsedRealtime() - creationTime;
-            if (creationPeriod > acceptableUiCalculationTime) {
-                UiUtils.UI_METRICS_LC_GROUP.w("Creation of %s took too much: %dms", getViewControllerClass(), creationPeriod);
-            }
+        if (creationTime == 0) {
+            return;
+        }
+        final long creationPeriod = SystemClock.elapsedRealtime() - creationTime;
+        if (inDebugMode && creationPeriod > acceptableUiCalculationTime) {
+            UiUtils.UI_METRICS_LC_GROUP.w("Creation of %s took too much: %dms", getViewControllerClass(), creationPeriod);
+        }
+        if (sampled) {
+            ViewControllerMetrics.record(getViewControllerClass(), ViewControllerMetrics.Metric.CREATION, creationPeriod);
         }
     }
 
@@ -239,13 +391,36 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
     public View onCreateView(@NonNull final LayoutInflater inflater,
                              @Nullable final ViewGroup container,
                              @Nullable final Bundle savedInstanceState) {
-        return new PlaceholderView(inflater.getContext(), getViewControllerClass().getName());
+        if (retainedView != null) {
+            if (retainedView.getParent() instanceof ViewGroup) {
+                ((ViewGroup) retainedView.getParent()).removeView(retainedView);
+            }
+            return retainedView;
+        }
+        return new PlaceholderView(inflater.getContext(), getViewControllerClass(), sampled);
     }
 
+    @SuppressWarnings("RestrictedApi")
+    //RestrictedApi: we need isMenuVisible() to know if fragment is showing to user
     @Override
     public void onViewCreated(@NonNull final View view, @Nullable final Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
+        if (isMenuVisible()) {
+            awaitState();
+        }
+        if (retainedView != null && view == retainedView) {
+            // view info is the same so ViewController is not recreating
+            retainedView = null;
+            if (viewController != null) {
+                ViewControllerMetrics.recordRetain(getViewControllerClass());
+                viewController.onViewReattached();
+            }
+            return;
+        }
+        retainedView = null;
         if (view instanceof PlaceholderView) {
+            // new view comes with it's own saved state which is newer than state of torn down ViewController
+            trimmedViewControllerState = null;
             viewSubject.onNext(new NullablePair<>((PlaceholderView) view, savedInstanceState));
         } else {
             Lc.assertion("View should be instanceof PlaceholderView");
@@ -262,22 +437,31 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
     protected void onStart(@NonNull final View view, @NonNull final TActivity activity) {
         super.onStart(view, activity);
         started = true;
+        startTime = sampled ? SystemClock.uptimeMillis() : 0;
         if (viewController != null) {
             viewController.onStart();
         }
+        trimmedSubject.onNext(false);
     }
 
     @Override
     protected void onAppear(@NonNull final View view, @NonNull final TActivity activity) {
         super.onAppear(view, activity);
+        trimmedSubject.onNext(false);
         if (viewController != null) {
             viewController.onAppear();
         }
+        if (startTime > 0) {
+            ViewControllerMetrics.record(getViewControllerClass(), ViewControllerMetrics.Metric.APPEAR_LATENCY,
+                    SystemClock.uptimeMillis() - startTime);
+            startTime = 0;
+        }
     }
 
     @Override
     protected void onResume(@NonNull final View view, @NonNull final TActivity activity) {
         super.onResume(view, activity);
+        stateSaved = false;
         if (viewController != null) {
             viewController.onResume();
         }
@@ -291,6 +475,30 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
         }
     }
 
+    /**
+     * Calls when system asks to trim memory. Dispatches it to {@link ViewController} and
+     * destroys {@link ViewController} if fragment is not showing to user and level is not less than tear down level
+     * (see {@link #setTrimMemoryTearDownLevel(int)}). Happens at {@link ViewControllerActivity#onTrimMemory(int)}.
+     *
+     * @param level Level of trimming like {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW};
+     * @return Upper bound of freed bytes: bitmaps of torn down views are counted even if they are shared or cached and so not freed.
+     */
+    @SuppressWarnings("RestrictedApi")
+    //RestrictedApi: we need isMenuVisible() to know if fragment is showing to user
+    public long onTrimMemory(final int level) {
+        if (viewController == null) {
+            return 0;
+        }
+        long result = viewController.onTrimMemory(level);
+        if (level >= trimMemoryTearDownLevel && (!started || !isMenuVisible())) {
+            result += UiUtils.OfViews.estimateBitmapsSize(viewController.getContainer());
+            trimmedViewControllerState = new Bundle();
+            viewController.onSaveInstanceState(trimmedViewControllerState);
+            trimmedSubject.onNext(true);
+        }
+        return result;
+    }
+
     /**
      * Calls when activity configuring ActionBar, Toolbar, Sidebar etc.
      * If it will be called or not depends on {@link #hasOptionsMenu()} and {@link #isMenuVisible()}.
@@ -317,7 +525,13 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
 
     private void onViewControllerChanged(@Nullable final ViewController viewController) {
         if (this.viewController != null) {
+            if (started) {
+                this.viewController.onStop();
+            }
             this.viewController.onDestroy();
+            if (viewController == null) {
+                this.viewController.getContainer().removeAllViews();
+            }
         }
         this.viewController = viewController;
         if (this.viewController != null) {
@@ -341,8 +555,18 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
         super.onSaveInstanceState(savedInstanceState);
         if (viewController != null) {
             viewController.onSaveInstanceState(savedInstanceState);
+        } else if (trimmedViewControllerState != null) {
+            // view controller was torn down by onTrimMemory so its state is kept only here
+            savedInstanceState.putAll(trimmedViewControllerState);
+        }
+        awaitState();
+        savedInstanceState.putString(VIEW_CONTROLLER_STATE_ID_EXTRA, stateId);
+        if (stateStorage != null) {
+            stateStorage.save(savedInstanceState, VIEW_CONTROLLER_STATE_EXTRA, stateId, state);
+        } else {
+            StateSerializer.putSnapshot(savedInstanceState, VIEW_CONTROLLER_STATE_EXTRA, state);
         }
-        savedInstanceState.putSerializable(VIEW_CONTROLLER_STATE_EXTRA, state);
+        stateSaved = true;
     }
 
     @Override
@@ -364,12 +588,22 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
 
     @Override
     protected void onDestroyView(@NonNull final View view) {
-        viewSubject.onNext(new NullablePair<>(null, null));
+        if (viewControllerRetaining && viewController != null && view instanceof PlaceholderView && !isRemoving()
+                && getActivity() != null && !getActivity().isChangingConfigurations()) {
+            retainedView = (PlaceholderView) view;
+        } else {
+            trimmedViewControllerState = null;
+            viewSubject.onNext(new NullablePair<>(null, null));
+        }
         super.onDestroyView(view);
     }
 
     @Override
     public void onDetach() {
+        if (retainedView != null) {
+            retainedView = null;
+            viewSubject.onNext(new NullablePair<>(null, null));
+        }
         activitySubject.onNext(new Optional<>(null));
         super.onDetach();
     }
@@ -377,42 +611,67 @@ public abstract class ViewControllerFragment<TState extends AbstractState, TActi
     @Override
     public void onDestroy() {
         viewControllerSubscription.unsubscribe();
+        if (pendingStateSubscription != null) {
+            pendingStateSubscription.unsubscribe();
+        }
         if (viewController != null && !viewController.isDestroyed()) {
             viewController.onDestroy();
             viewController = null;
         }
+        // state is not needed anymore if fragment is removed for good or if it's activity is finishing (e.g. closed by back button),
+        // but fragment could be removed with saved state (e.g. by LazyBackStack) so it's state file is still needed
+        final boolean finishing = (isRemoving() && !stateSaved) || (getActivity() != null && getActivity().isFinishing());
+        if (stateStorage != null && finishing && (getActivity() == null || !getActivity().isChangingConfigurations())) {
+            stateStorage.remove(stateId);
+        }
         super.onDestroy();
     }
 
     private static class PlaceholderView extends FrameLayout {
 
         @NonNull
-        private final String tagName;
+        private final Class<?> viewControllerClass;
+        private final boolean sampled;
         private long lastMeasureTime;
+        private long firstDrawStartTime;
 
-        public PlaceholderView(@NonNull final Context context, @NonNull final String tagName) {
+        public PlaceholderView(@NonNull final Context context, @NonNull final Class<?> viewControllerClass, final boolean sampled) {
             super(context);
-            this.tagName = tagName;
+            this.viewControllerClass = viewControllerClass;
+            this.sampled = sampled;
+        }
+
+        public void startFirstDrawMeasure() {
+            firstDrawStartTime = SystemClock.uptimeMillis();
         }
 
         @Override
         protected void onMeasure(final int widthMeasureSpec, final int heightMeasureSpec) {
             super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-            if (inDebugMode && lastMeasureTime == 0) {
+            if ((inDebugMode || sampled) && lastMeasureTime == 0) {
                 lastMeasureTime = SystemClock.uptimeMillis();
             }
         }
 
+        // dispatchDraw is used as onDraw is not calling for FrameLayout without background
         @Override
-        protected void onDraw(@NonNull final Canvas canvas) {
-            super.onDraw(canvas);
-            if (inDebugMode && lastMeasureTime > 0) {
+        protected void dispatchDraw(@NonNull final Canvas canvas) {
+            super.dispatchDraw(canvas);
+            if (lastMeasureTime > 0) {
                 final long layoutTime = SystemClock.uptimeMillis() - lastMeasureTime;
-                if (layoutTime > acceptableUiCalculationTime) {
-                    UiUtils.UI_METRICS_LC_GROUP.w("Measure and layout of %s took too much: %dms", tagName, layoutTime);
+                if (inDebugMode && layoutTime > acceptableUiCalculationTime) {
+                    UiUtils.UI_METRICS_LC_GROUP.w("Measure and layout of %s took too much: %dms", viewControllerClass.getName(), layoutTime);
+                }
+                if (sampled) {
+                    ViewControllerMetrics.record(viewControllerClass, ViewControllerMetrics.Metric.LAYOUT, layoutTime);
                 }
                 lastMeasureTime = 0;
             }
+            if (firstDrawStartTime > 0) {
+                ViewControllerMetrics.record(viewControllerClass, ViewControllerMetrics.Metric.FIRST_DRAW,
+                        SystemClock.uptimeMillis() - firstDrawStartTime);
+                firstDrawStartTime = 0;
+            }
         }
 
     }
@@ -0,0 +1,187 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.utils;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.InflateException;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import java.util.ArrayDeque;
+
+import ru.touchin.roboswag.core.log.Lc;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Pool of already inflated and detached view trees of specific layouts.
+ * Views are inflating on main thread when it is idle so inflation is not affecting frames
+ * and views are inflated by {@link LayoutInflater} of context (e.g. with AppCompat's views factory) which is not thread-safe.
+ * Every obtained view is replaced by new one at next idle time so frequently opened screens are always having view to take.
+ * Views are keeping reference to context so pool should be cleared when context is destroying.
+ * Layout parameters of views are created for {@link FrameLayout} parent.
+ */
+public class LayoutPool {
+
+    private static final int DEFAULT_MAX_POOLED_VIEWS = 2;
+
+    @NonNull
+    private final LayoutInflater layoutInflater;
+    @NonNull
+    private final FrameLayout templateParent;
+    @NonNull
+    private final SparseArray<ArrayDeque<View>> pooledViews = new SparseArray<>();
+    @NonNull
+    private final SparseIntArray requestedCounts = new SparseIntArray();
+    @NonNull
+    private final MessageQueue.IdleHandler fillingIdleHandler = this::fillNext;
+    private final int maxPooledViews;
+    private boolean filling;
+    private long hits;
+    private long misses;
+
+    public LayoutPool(@NonNull final Context context) {
+        this(context, DEFAULT_MAX_POOLED_VIEWS);
+    }
+
+    /**
+     * Creates pool.
+     *
+     * @param context        Context to inflate views with (usually activity);
+     * @param maxPooledViews Maximum count of pooled views of every layout.
+     */
+    public LayoutPool(@NonNull final Context context, final int maxPooledViews) {
+        this.layoutInflater = LayoutInflater.from(context);
+        this.templateParent = new FrameLayout(context);
+        this.maxPooledViews = maxPooledViews;
+    }
+
+    /**
+     * Requests pool to keep specific count of inflated views of layout. Views will be inflated when main thread is idle.
+     * Should be called from main thread.
+     *
+     * @param layoutId Id of layout resource;
+     * @param count    Count of views to keep. It is limited by maximum count of pooled views of pool.
+     */
+    public void prefill(@LayoutRes final int layoutId, final int count) {
+        requestedCounts.put(layoutId, Math.min(count, maxPooledViews));
+        startFilling();
+    }
+
+    /**
+     * Takes inflated view of layout from pool. Should be called from main thread.
+     *
+     * @param layoutId Id of layout resource;
+     * @return Detached view or null if there is no inflated view of such layout in pool.
+     */
+    @Nullable
+    public View obtain(@LayoutRes final int layoutId) {
+        final ArrayDeque<View> views = pooledViews.get(layoutId);
+        final View result = views != null ? views.poll() : null;
+        if (result != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        startFilling();
+        return result;
+    }
+
+    /**
+     * Removes all pooled views but keeps requested counts so pool will be filled again after next {@link #obtain(int)}.
+     * Call it when memory is low.
+     */
+    public void trim() {
+        stopFilling();
+        pooledViews.clear();
+    }
+
+    /**
+     * Removes all pooled views and requests. Call it when context is destroying.
+     */
+    public void clear() {
+        stopFilling();
+        pooledViews.clear();
+        requestedCounts.clear();
+    }
+
+    /**
+     * Returns how many times views have been taken from pool.
+     *
+     * @return Count of hits.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns how many times there were no views in pool to take.
+     *
+     * @return Count of misses.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    private void startFilling() {
+        if (!filling && requestedCounts.size() > 0) {
+            filling = true;
+            Looper.myQueue().addIdleHandler(fillingIdleHandler);
+        }
+    }
+
+    private void stopFilling() {
+        if (filling) {
+            Looper.myQueue().removeIdleHandler(fillingIdleHandler);
+            filling = false;
+        }
+    }
+
+    private boolean fillNext() {
+        for (int i = 0; i < requestedCounts.size(); i++) {
+            final int layoutId = requestedCounts.keyAt(i);
+            ArrayDeque<View> views = pooledViews.get(layoutId);
+            if (views == null) {
+                views = new ArrayDeque<>();
+                pooledViews.put(layoutId, views);
+            }
+            if (views.size() < requestedCounts.valueAt(i)) {
+                try {
+                    views.add(layoutInflater.inflate(layoutId, templateParent, false));
+                } catch (final InflateException exception) {
+                    Lc.assertion(exception);
+                    requestedCounts.removeAt(i);
+                }
+                // inflating one view per idle time to not block main thread for long
+                return true;
+            }
+        }
+        filling = false;
+        return false;
+    }
+
+}
@@ -20,15 +20,25 @@
 package ru.touchin.roboswag.components.utils;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import ru.touchin.roboswag.core.utils.ShouldNotHappenException;
+import rx.Completable;
 import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
 
 /**
  * Created by Gavriil Sitnikov on 24/03/16.
@@ -41,50 +51,174 @@ import rx.Observable;
  * which will allows to access to some logic methods.
  * In fact it is similar to dependency injection pattern but with full control of instantiation and only one single instance of {@link Logic} per app.
  * If you want to use it then just create getter in {@link android.app.Service}/{@link android.app.Activity}/{@link android.content.BroadcastReceiver}
- * or any else context-based elements and do not forget to store reference to {@link Logic} into field because else it will be consumed by GC.
+ * or any else context-based elements and store reference to {@link Logic} into field if it's retention is {@link Retention#WEAK}
+ * (by default) because else it will be consumed by GC.
  * Sample of {@link Logic} using is in {@link ru.touchin.roboswag.components.navigation.activities.ViewControllerActivity}.
  * NOTE: Ideally creation of logic should be asynchronous and stored in specific {@link android.app.Service} so it should be accessed
  * asynchronously via {@link Observable} or so. But in fact it requires {@link android.app.Service} plus more complex methods to access to logic.
- * So currently it is more simple to access via simple bridge based on singletons stored into {@link WeakReference} because anyway instantiation of
+ * So currently it is more simple to access via simple bridge based on singletons because anyway instantiation of
  * logic have to be as fast as it can. If it's not then it is just a bug and problem of optimization.
+ * How long singleton of each class is kept is defined by it's {@link Retention} (see {@link #setRetention(Class, Retention)}):
+ * {@link Retention#WEAK} - while somebody holds it, {@link Retention#SOFT} - until GC needs memory,
+ * {@link Retention#STRONG} - for whole process lifetime, {@link Retention#KEEP_ALIVE} - for some time after last request.
+ * If {@link Logic} classes depend on each other then declare it via {@link LogicDependencies} and start them by {@link LogicStartup}.
  */
 public class Logic {
 
-    private static final Map<Class<? extends Logic>, WeakReference<Logic>> LOGIC_INSTANCES = new HashMap<>();
+    private static final ConcurrentHashMap<Class<? extends Logic>, LogicHolder> LOGIC_HOLDERS = new ConcurrentHashMap<>();
+    private static final long DEFAULT_KEEP_ALIVE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    @Nullable
+    private static Scheduler prewarmScheduler;
+    @Nullable
+    private static ScheduledExecutorService releaseExecutor;
 
     /**
      * Returns instance of {@link Logic} depends on class. There should be no more than one instance per class.
+     * Instances of different classes are constructing independently so slow constructor of one {@link Logic} is not blocking others.
      *
      * @param context    Context of application where this {@link Logic} related to;
      * @param logicClass Class of {@link Logic};
      * @param <T>        Type of class of {@link Logic};
      * @return Instance of {@link Logic}.
      */
-    @SuppressWarnings({"unchecked", "PMD.SingletonClassReturningNewInstance"})
-    //SingletonClassReturningNewInstance: it is OK to create instance every time if WeakReference have died
+    @SuppressWarnings("unchecked")
     @NonNull
     public static <T extends Logic> T getInstance(@NonNull final Context context, @NonNull final Class<T> logicClass) {
-        T result;
-        synchronized (LOGIC_INSTANCES) {
-            final WeakReference<Logic> reference = LOGIC_INSTANCES.get(logicClass);
-            result = reference != null ? (T) reference.get() : null;
-            if (result == null) {
-                result = constructLogic(context.getApplicationContext(), logicClass);
-                LOGIC_INSTANCES.put(logicClass, new WeakReference<>(result));
+        return (T) getHolder(logicClass).get(context, true);
+    }
+
+    /**
+     * Constructs instances of {@link Logic} classes in parallel on background threads. Call it at {@link android.app.Application#onCreate()}.
+     * Prewarmed instances are held strongly until first {@link #getInstance(Context, Class)} call of their class.
+     *
+     * @param context      Context of application;
+     * @param logicClasses Classes of {@link Logic} to construct;
+     * @return {@link Completable} which completes when all instances are constructed.
+     */
+    @SafeVarargs
+    @NonNull
+    public static Completable prewarm(@NonNull final Context context, @NonNull final Class<? extends Logic>... logicClasses) {
+        return Observable.from(logicClasses)
+                .flatMap(logicClass -> Observable
+                        .fromCallable(() -> prewarmInstance(context, logicClass))
+                        .subscribeOn(getPrewarmScheduler()))
+                .toCompletable();
+    }
+
+    /**
+     * Returns instance of {@link Logic} and holds it strongly until first {@link #getInstance(Context, Class)} call of it's class
+     * if it have not been requested before.
+     *
+     * @param context    Context of application;
+     * @param logicClass Class of {@link Logic};
+     * @return Instance of {@link Logic}.
+     */
+    @NonNull
+    static Logic prewarmInstance(@NonNull final Context context, @NonNull final Class<? extends Logic> logicClass) {
+        return getHolder(logicClass).get(context, false);
+    }
+
+    /**
+     * Sets policy of keeping instances of specific {@link Logic} class in memory. It is {@link Retention#WEAK} by default.
+     * If policy is {@link Retention#KEEP_ALIVE} then instance is kept strongly for 30 seconds after last request.
+     *
+     * @param logicClass Class of {@link Logic};
+     * @param retention  Retention policy.
+     */
+    public static void setRetention(@NonNull final Class<? extends Logic> logicClass, @NonNull final Retention retention) {
+        getHolder(logicClass).setRetention(retention, DEFAULT_KEEP_ALIVE_MILLIS);
+    }
+
+    /**
+     * Sets {@link Retention#KEEP_ALIVE} policy with specific time of keeping instance strongly after last request.
+     *
+     * @param logicClass      Class of {@link Logic};
+     * @param keepAliveMillis Time in milliseconds.
+     */
+    public static void setKeepAlive(@NonNull final Class<? extends Logic> logicClass, final long keepAliveMillis) {
+        getHolder(logicClass).setRetention(Retention.KEEP_ALIVE, keepAliveMillis);
+    }
+
+    /**
+     * Returns how many times {@link Logic} of specific class have been constructed again after it's previous instance was collected by GC.
+     * It shows how much churn current {@link Retention} is causing.
+     *
+     * @param logicClass Class of {@link Logic};
+     * @return Count of rebuilds.
+     */
+    public static int getRebuildsCount(@NonNull final Class<? extends Logic> logicClass) {
+        return Math.max(0, getConstructionsCount(logicClass) - 1);
+    }
+
+    /**
+     * Returns time of last construction of {@link Logic} of specific class.
+     *
+     * @param logicClass Class of {@link Logic};
+     * @return Time in milliseconds or 0 if it have not been constructed.
+     */
+    public static long getConstructionTime(@NonNull final Class<? extends Logic> logicClass) {
+        final LogicHolder holder = LOGIC_HOLDERS.get(logicClass);
+        return holder != null ? holder.lastConstructionTime : 0;
+    }
+
+    /**
+     * Returns how many times {@link Logic} of specific class have been constructed.
+     *
+     * @param logicClass Class of {@link Logic};
+     * @return Count of constructions.
+     */
+    public static int getConstructionsCount(@NonNull final Class<? extends Logic> logicClass) {
+        final LogicHolder holder = LOGIC_HOLDERS.get(logicClass);
+        return holder != null ? holder.constructionsCount : 0;
+    }
+
+    // created only if prewarm is used; threads are daemons so they do not keep process alive
+    @NonNull
+    private static synchronized Scheduler getPrewarmScheduler() {
+        if (prewarmScheduler == null) {
+            prewarmScheduler = Schedulers.from(Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+                final Thread thread = new Thread(runnable, "LogicPrewarm");
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+        return prewarmScheduler;
+    }
+
+    // created only if there are KEEP_ALIVE logics; thread is daemon so it does not keep process alive
+    @NonNull
+    private static synchronized ScheduledExecutorService getReleaseExecutor() {
+        if (releaseExecutor == null) {
+            releaseExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "LogicRelease");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return releaseExecutor;
+    }
+
+    @NonNull
+    private static LogicHolder getHolder(@NonNull final Class<? extends Logic> logicClass) {
+        LogicHolder holder = LOGIC_HOLDERS.get(logicClass);
+        if (holder == null) {
+            final LogicHolder newHolder = new LogicHolder(logicClass);
+            holder = LOGIC_HOLDERS.putIfAbsent(logicClass, newHolder);
+            if (holder == null) {
+                holder = newHolder;
             }
         }
-        return result;
+        return holder;
     }
 
     @NonNull
-    @SuppressWarnings("unchecked")
-    private static <T extends Logic> T constructLogic(@NonNull final Context context, @NonNull final Class<T> logicClass) {
+    private static Logic constructLogic(@NonNull final Context context, @NonNull final Class<? extends Logic> logicClass) {
         if (logicClass.getConstructors().length != 1 || logicClass.getConstructors()[0].getParameterTypes().length != 1) {
             throw new ShouldNotHappenException("There should be only one public constructor(Context) for class " + logicClass);
         }
         final Constructor<?> constructor = logicClass.getConstructors()[0];
         try {
-            return (T) constructor.newInstance(context);
+            return (Logic) constructor.newInstance(context);
         } catch (final Exception exception) {
             throw new ShouldNotHappenException(exception);
         }
@@ -107,4 +241,142 @@ public class Logic {
         return context;
     }
 
+    /**
+     * Policy of keeping instance of {@link Logic} in memory.
+     */
+    public enum Retention {
+        /**
+         * Instance is kept by {@link WeakReference} so it is collected by GC as soon as nobody holds it.
+         */
+        WEAK,
+        /**
+         * Instance is kept by {@link SoftReference} so it is collected by GC only when memory is needed.
+         */
+        SOFT,
+        /**
+         * Instance is kept strongly for the whole process lifetime.
+         */
+        STRONG,
+        /**
+         * Instance is kept strongly for some time after last request and then by {@link WeakReference}.
+         */
+        KEEP_ALIVE
+    }
+
+    private static class LogicHolder {
+
+        @NonNull
+        private final Class<? extends Logic> logicClass;
+        @NonNull
+        private final AtomicBoolean releaseScheduled = new AtomicBoolean();
+        @NonNull
+        private volatile Retention retention = Retention.WEAK;
+        private volatile long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+        @Nullable
+        private volatile Reference<Logic> reference;
+        //strong reference to instance if retention is STRONG or KEEP_ALIVE
+        @Nullable
+        private volatile Logic strongInstance;
+        //strong reference to prewarmed instance until first request
+        @Nullable
+        private volatile Logic prewarmedInstance;
+        private volatile long lastAccessTime;
+        private volatile long lastConstructionTime;
+        private volatile int constructionsCount;
+
+        public LogicHolder(@NonNull final Class<? extends Logic> logicClass) {
+            this.logicClass = logicClass;
+        }
+
+        @Nullable
+        private Logic getAlive() {
+            final Reference<Logic> currentReference = reference;
+            return currentReference != null ? currentReference.get() : null;
+        }
+
+        @NonNull
+        private Reference<Logic> createReference(@NonNull final Logic logic) {
+            return retention == Retention.SOFT ? new SoftReference<>(logic) : new WeakReference<>(logic);
+        }
+
+        public synchronized void setRetention(@NonNull final Retention retention, final long keepAliveMillis) {
+            this.retention = retention;
+            this.keepAliveMillis = keepAliveMillis;
+            final Logic alive = getAlive();
+            if (alive != null) {
+                reference = createReference(alive);
+            }
+            strongInstance = retention == Retention.STRONG || retention == Retention.KEEP_ALIVE ? alive : null;
+            if (alive != null && retention == Retention.KEEP_ALIVE) {
+                onAccessed(alive);
+            }
+        }
+
+        @SuppressWarnings("PMD.SingletonClassReturningNewInstance")
+        //SingletonClassReturningNewInstance: it is OK to create instance every time if reference have died
+        @NonNull
+        public Logic get(@NonNull final Context context, final boolean requested) {
+            Logic result = getAlive();
+            if (result == null || (requested && prewarmedInstance != null)) {
+                synchronized (this) {
+                    if (result == null) {
+                        result = getAlive();
+                    }
+                    if (result == null) {
+                        result = construct(context);
+                    }
+                    prewarmedInstance = requested ? null : result;
+                }
+            }
+            if (retention == Retention.KEEP_ALIVE) {
+                onAccessed(result);
+            }
+            return result;
+        }
+
+        @NonNull
+        private Logic construct(@NonNull final Context context) {
+            final long startTime = SystemClock.elapsedRealtime();
+            final Logic result = constructLogic(context.getApplicationContext(), logicClass);
+            lastConstructionTime = SystemClock.elapsedRealtime() - startTime;
+            constructionsCount++;
+            if (constructionsCount > 1) {
+                UiUtils.UI_METRICS_LC_GROUP.w("Rebuild #%d of %s with retention %s took %dms",
+                        constructionsCount - 1, logicClass.getName(), retention, lastConstructionTime);
+            } else {
+                UiUtils.UI_METRICS_LC_GROUP.i("Construction of %s took %dms", logicClass.getName(), lastConstructionTime);
+            }
+            reference = createReference(result);
+            strongInstance = retention == Retention.STRONG ? result : null;
+            return result;
+        }
+
+        private void onAccessed(@NonNull final Logic logic) {
+            lastAccessTime = SystemClock.elapsedRealtime();
+            strongInstance = logic;
+            if (releaseScheduled.compareAndSet(false, true)) {
+                getReleaseExecutor().schedule(this::releaseIfExpired, keepAliveMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void releaseIfExpired() {
+            final long checkedAccessTime = lastAccessTime;
+            final long idleTime = SystemClock.elapsedRealtime() - checkedAccessTime;
+            if (retention == Retention.KEEP_ALIVE && idleTime < keepAliveMillis) {
+                getReleaseExecutor().schedule(this::releaseIfExpired, keepAliveMillis - idleTime, TimeUnit.MILLISECONDS);
+                return;
+            }
+            if (retention == Retention.KEEP_ALIVE) {
+                strongInstance = null;
+            }
+            releaseScheduled.set(false);
+            final Logic alive = getAlive();
+            // instance could be accessed while releasing
+            if (lastAccessTime != checkedAccessTime && alive != null && retention == Retention.KEEP_ALIVE) {
+                onAccessed(alive);
+            }
+        }
+
+    }
+
 }
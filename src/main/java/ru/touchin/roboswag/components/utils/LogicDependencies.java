@@ -0,0 +1,43 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.utils;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Declares {@link Logic} classes which are requested by constructor of annotated {@link Logic} via {@link Logic#getInstance}.
+ * {@link LogicStartup} constructs them before annotated {@link Logic} and constructs independent {@link Logic}s in parallel.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface LogicDependencies {
+
+    /**
+     * Returns classes of {@link Logic} which annotated {@link Logic} depends on.
+     *
+     * @return Classes of dependencies.
+     */
+    Class<? extends Logic>[] value();
+
+}
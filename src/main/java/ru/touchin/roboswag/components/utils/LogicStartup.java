@@ -0,0 +1,261 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.utils;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ru.touchin.roboswag.core.utils.ShouldNotHappenException;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Single;
+import rx.schedulers.Schedulers;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Orchestrator of {@link Logic}s construction at application start.
+ * It is collecting graph of {@link Logic} classes by {@link LogicDependencies} annotations, checks that there are no cycles
+ * and constructs every {@link Logic} on bounded pool of background threads right after all of it's dependencies are constructed.
+ * So independent {@link Logic}s are constructing in parallel and dependencies requested inside constructors are already constructed.
+ * Constructed instances are held strongly until their first {@link Logic#getInstance} call.
+ * For every {@link Logic} it reports construction time and critical path time (construction time plus longest critical path of dependencies)
+ * so it is clear which chain of dependencies limits startup time.
+ */
+public class LogicStartup {
+
+    @NonNull
+    private final Context context;
+    private final int maxParallelism;
+
+    public LogicStartup(@NonNull final Context context) {
+        this(context, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Creates orchestrator.
+     *
+     * @param context        Context of application;
+     * @param maxParallelism Maximum count of {@link Logic}s which are constructing at same time.
+     */
+    public LogicStartup(@NonNull final Context context, final int maxParallelism) {
+        this.context = context;
+        this.maxParallelism = maxParallelism;
+    }
+
+    /**
+     * Constructs {@link Logic}s and all their dependencies.
+     * Emits {@link ShouldNotHappenException} if there is cycle in dependencies.
+     *
+     * @param logicClasses Classes of {@link Logic} to construct;
+     * @return {@link Single} which emits timings of all constructed {@link Logic}s sorted by critical path time descending.
+     */
+    @SafeVarargs
+    @NonNull
+    public final Single<List<Timing>> start(@NonNull final Class<? extends Logic>... logicClasses) {
+        return Single.defer(() -> {
+            final Map<Class<? extends Logic>, List<Class<? extends Logic>>> graph = new LinkedHashMap<>();
+            for (final Class<? extends Logic> logicClass : logicClasses) {
+                collectGraph(logicClass, graph, new ArrayList<>());
+            }
+            final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxParallelism, graph.size())));
+            final Scheduler scheduler = Schedulers.from(executor);
+            final long startTime = SystemClock.elapsedRealtime();
+            final Map<Class<? extends Logic>, Observable<Timing>> nodes = new HashMap<>();
+            final List<Observable<Timing>> allNodes = new ArrayList<>();
+            for (final Class<? extends Logic> logicClass : graph.keySet()) {
+                allNodes.add(getNode(logicClass, graph, nodes, scheduler, startTime));
+            }
+            return Observable.merge(allNodes)
+                    .toSortedList((first, second) -> Long.valueOf(second.criticalPathTime).compareTo(first.criticalPathTime))
+                    .doOnNext(timings -> logTimings(timings, SystemClock.elapsedRealtime() - startTime))
+                    // shutdown is idempotent so executor is released both on termination and on early unsubscribe
+                    .doAfterTerminate(executor::shutdown)
+                    .doOnUnsubscribe(executor::shutdown)
+                    .toSingle();
+        });
+    }
+
+    private void collectGraph(@NonNull final Class<? extends Logic> logicClass,
+                              @NonNull final Map<Class<? extends Logic>, List<Class<? extends Logic>>> graph,
+                              @NonNull final List<Class<? extends Logic>> path) {
+        if (path.contains(logicClass)) {
+            final StringBuilder cycle = new StringBuilder();
+            for (int i = path.indexOf(logicClass); i < path.size(); i++) {
+                cycle.append(path.get(i).getName()).append(" -> ");
+            }
+            throw new ShouldNotHappenException("Cycle of Logic dependencies: " + cycle + logicClass.getName());
+        }
+        if (graph.containsKey(logicClass)) {
+            return;
+        }
+        final LogicDependencies dependencies = logicClass.getAnnotation(LogicDependencies.class);
+        final List<Class<? extends Logic>> dependencyClasses = new ArrayList<>();
+        if (dependencies != null) {
+            Collections.addAll(dependencyClasses, dependencies.value());
+        }
+        path.add(logicClass);
+        for (final Class<? extends Logic> dependencyClass : new HashSet<>(dependencyClasses)) {
+            collectGraph(dependencyClass, graph, path);
+        }
+        path.remove(path.size() - 1);
+        graph.put(logicClass, dependencyClasses);
+    }
+
+    @NonNull
+    private Observable<Timing> getNode(@NonNull final Class<? extends Logic> logicClass,
+                                       @NonNull final Map<Class<? extends Logic>, List<Class<? extends Logic>>> graph,
+                                       @NonNull final Map<Class<? extends Logic>, Observable<Timing>> nodes,
+                                       @NonNull final Scheduler scheduler,
+                                       final long startTime) {
+        final Observable<Timing> existingNode = nodes.get(logicClass);
+        if (existingNode != null) {
+            return existingNode;
+        }
+        final List<Observable<Timing>> dependencyNodes = new ArrayList<>();
+        for (final Class<? extends Logic> dependencyClass : graph.get(logicClass)) {
+            dependencyNodes.add(getNode(dependencyClass, graph, nodes, scheduler, startTime));
+        }
+        final Observable<Timing> node = Observable.merge(dependencyNodes)
+                .toList()
+                .observeOn(scheduler)
+                .map(dependencyTimings -> {
+                    final long constructionStartTime = SystemClock.elapsedRealtime();
+                    Logic.prewarmInstance(context, logicClass);
+                    final long constructionTime = SystemClock.elapsedRealtime() - constructionStartTime;
+                    Timing criticalDependency = null;
+                    for (final Timing dependencyTiming : dependencyTimings) {
+                        if (criticalDependency == null || dependencyTiming.criticalPathTime > criticalDependency.criticalPathTime) {
+                            criticalDependency = dependencyTiming;
+                        }
+                    }
+                    return new Timing(logicClass, constructionTime,
+                            constructionTime + (criticalDependency != null ? criticalDependency.criticalPathTime : 0),
+                            SystemClock.elapsedRealtime() - startTime, criticalDependency);
+                })
+                .cache();
+        nodes.put(logicClass, node);
+        return node;
+    }
+
+    private void logTimings(@NonNull final List<Timing> timings, final long totalTime) {
+        UiUtils.UI_METRICS_LC_GROUP.i("Startup of %d Logic classes took %dms", timings.size(), totalTime);
+        for (final Timing timing : timings) {
+            UiUtils.UI_METRICS_LC_GROUP.i("%s", timing);
+        }
+    }
+
+    /**
+     * Timing of {@link Logic} construction at startup.
+     */
+    public static class Timing {
+
+        @NonNull
+        private final Class<? extends Logic> logicClass;
+        private final long constructionTime;
+        private final long criticalPathTime;
+        private final long finishTime;
+        @Nullable
+        private final Timing criticalDependency;
+
+        public Timing(@NonNull final Class<? extends Logic> logicClass, final long constructionTime, final long criticalPathTime,
+                      final long finishTime, @Nullable final Timing criticalDependency) {
+            this.logicClass = logicClass;
+            this.constructionTime = constructionTime;
+            this.criticalPathTime = criticalPathTime;
+            this.finishTime = finishTime;
+            this.criticalDependency = criticalDependency;
+        }
+
+        /**
+         * Returns class of {@link Logic}.
+         *
+         * @return Class of {@link Logic}.
+         */
+        @NonNull
+        public Class<? extends Logic> getLogicClass() {
+            return logicClass;
+        }
+
+        /**
+         * Returns time of construction of {@link Logic} itself in milliseconds.
+         * It is near zero if {@link Logic} have been constructed before startup.
+         *
+         * @return Construction time.
+         */
+        public long getConstructionTime() {
+            return constructionTime;
+        }
+
+        /**
+         * Returns construction time plus critical path time of slowest dependency in milliseconds.
+         *
+         * @return Critical path time.
+         */
+        public long getCriticalPathTime() {
+            return criticalPathTime;
+        }
+
+        /**
+         * Returns time from start of startup to end of construction in milliseconds. It includes waiting for free thread.
+         *
+         * @return Finish time.
+         */
+        public long getFinishTime() {
+            return finishTime;
+        }
+
+        /**
+         * Returns timing of dependency which is on critical path of this {@link Logic}.
+         *
+         * @return Timing of dependency or null if there are no dependencies.
+         */
+        @Nullable
+        public Timing getCriticalDependency() {
+            return criticalDependency;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            final StringBuilder path = new StringBuilder(logicClass.getSimpleName());
+            Timing dependency = criticalDependency;
+            while (dependency != null) {
+                path.append(" <- ").append(dependency.logicClass.getSimpleName());
+                dependency = dependency.criticalDependency;
+            }
+            return logicClass.getName() + ": construction=" + constructionTime + "ms criticalPath=" + criticalPathTime
+                    + "ms finish=" + finishTime + "ms path=" + path;
+        }
+
+    }
+
+}
@@ -24,6 +24,8 @@ import android.app.Application;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Resources;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
@@ -40,6 +42,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -342,6 +345,34 @@ public final class UiUtils {
             }
         }
 
+        /**
+         * Estimates size in bytes of bitmaps which are drawing by {@link View} and it's children (backgrounds and images).
+         * Bitmaps which are shared between views are counted several times so it is approximate value.
+         *
+         * @param view {@link View} to estimate;
+         * @return Estimated size of bitmaps in bytes.
+         */
+        public static long estimateBitmapsSize(@NonNull final View view) {
+            long result = getBitmapSize(view.getBackground());
+            if (view instanceof ImageView) {
+                result += getBitmapSize(((ImageView) view).getDrawable());
+            }
+            if (view instanceof ViewGroup) {
+                final ViewGroup viewGroup = (ViewGroup) view;
+                for (int i = 0; i < viewGroup.getChildCount(); i++) {
+                    result += estimateBitmapsSize(viewGroup.getChildAt(i));
+                }
+            }
+            return result;
+        }
+
+        private static long getBitmapSize(@Nullable final Drawable drawable) {
+            if (drawable instanceof BitmapDrawable && ((BitmapDrawable) drawable).getBitmap() != null) {
+                return ((BitmapDrawable) drawable).getBitmap().getByteCount();
+            }
+            return 0;
+        }
+
         private OfViews() {
         }
 
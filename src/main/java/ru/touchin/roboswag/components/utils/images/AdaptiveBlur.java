@@ -0,0 +1,409 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.utils.images;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.renderscript.RSRuntimeException;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.touchin.roboswag.components.utils.UiUtils;
+import ru.touchin.roboswag.core.log.Lc;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Blur which is choosing fastest of {@link BlurUtils} backends on current device.
+ * First blur of every size and radius bucket (sizes and radii are grouped by powers of two) is calibrating: every available backend
+ * is measured on copy of actual bitmap and fastest one is used for bucket since then.
+ * Results of calibration are stored in {@link SharedPreferences} and are dropped when system is updated.
+ * If RenderScript fails then bitmap is blurred by fastest of other backends. RenderScript is not used anymore on device
+ * only if it have failed several times in a row (single failure could be transient, e.g. while application is in background).
+ * Bucket is calibrated by one thread at a time, other threads are blurring bitmaps of bucket by {@link Backend#STACK_BLUR} meanwhile.
+ * Chosen backends, timings and fallbacks are available as metrics and are logged to {@link UiUtils#UI_METRICS_LC_GROUP}.
+ */
+public class AdaptiveBlur {
+
+    private static final String PREFERENCES_NAME = "roboswag_adaptive_blur";
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    private static final String RENDERSCRIPT_FAILED_KEY = "renderscript_failed";
+    private static final String CALIBRATION_KEY_PREFIX = "calibration_";
+    private static final String SEPARATOR = ";";
+    private static final long NOT_MEASURED = -1;
+    private static final int MAX_RENDERSCRIPT_FAILURES_IN_ROW = 3;
+
+    private static int getBucket(final int value) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(0, value - 1));
+    }
+
+    @NonNull
+    private final Context context;
+    @NonNull
+    private final SharedPreferences preferences;
+    @NonNull
+    private final ConcurrentHashMap<String, Calibration> calibrations = new ConcurrentHashMap<>();
+    @NonNull
+    private final ConcurrentHashMap<String, Boolean> calibratingKeys = new ConcurrentHashMap<>();
+    @NonNull
+    private final AtomicLong[] usagesCounts = new AtomicLong[Backend.values().length];
+    @NonNull
+    private final AtomicLong[] usagesNanos = new AtomicLong[Backend.values().length];
+    @NonNull
+    private final AtomicLong fallbacksCount = new AtomicLong();
+    @NonNull
+    private final AtomicInteger renderscriptFailuresInRow = new AtomicInteger();
+    private volatile boolean renderscriptFailed;
+
+    public AdaptiveBlur(@NonNull final Context context) {
+        this.context = context.getApplicationContext();
+        preferences = this.context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        if (!Build.FINGERPRINT.equals(preferences.getString(FINGERPRINT_KEY, null))) {
+            preferences.edit().clear().putString(FINGERPRINT_KEY, Build.FINGERPRINT).apply();
+        }
+        renderscriptFailed = preferences.getBoolean(RENDERSCRIPT_FAILED_KEY, false);
+        for (int i = 0; i < usagesCounts.length; i++) {
+            usagesCounts[i] = new AtomicLong();
+            usagesNanos[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Blurs bitmap in place by fastest backend. Should be called from background thread.
+     *
+     * @param bitmap Mutable bitmap in {@link Bitmap.Config#ARGB_8888} config;
+     * @param radius Radius of blur. Nothing happens if it is less than 1.
+     */
+    public void blur(@NonNull final Bitmap bitmap, final int radius) {
+        if (radius < 1) {
+            return;
+        }
+        final String key = getCalibrationKey(bitmap.getWidth(), bitmap.getHeight(), radius);
+        Calibration calibration = getCalibration(key);
+        if (calibration == null) {
+            if (calibratingKeys.putIfAbsent(key, Boolean.TRUE) != null) {
+                // other thread is calibrating same bucket
+                final long startTime = System.nanoTime();
+                blur(Backend.STACK_BLUR, bitmap, radius);
+                usagesCounts[Backend.STACK_BLUR.ordinal()].incrementAndGet();
+                usagesNanos[Backend.STACK_BLUR.ordinal()].addAndGet(System.nanoTime() - startTime);
+                return;
+            }
+            try {
+                calibration = calibrate(key, bitmap, radius);
+            } finally {
+                calibratingKeys.remove(key);
+            }
+        }
+        Backend backend = calibration.getBackend();
+        if (backend == Backend.RENDERSCRIPT && renderscriptFailed) {
+            backend = calibration.getFastestBackend(false);
+        }
+        final long startTime = System.nanoTime();
+        if (!blur(backend, bitmap, radius)) {
+            backend = calibration.getFastestBackend(false);
+            blur(backend, bitmap, radius);
+        }
+        usagesCounts[backend.ordinal()].incrementAndGet();
+        usagesNanos[backend.ordinal()].addAndGet(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Returns backend which is chosen for specific size and radius.
+     *
+     * @param width  Width of bitmap;
+     * @param height Height of bitmap;
+     * @param radius Radius of blur;
+     * @return Backend or null if bitmaps of such size and radius have not been blurred (calibrated) yet.
+     */
+    @Nullable
+    public Backend getBackend(final int width, final int height, final int radius) {
+        final Calibration calibration = getCalibration(getCalibrationKey(width, height, radius));
+        if (calibration == null) {
+            return null;
+        }
+        return calibration.getBackend() == Backend.RENDERSCRIPT && renderscriptFailed
+                ? calibration.getFastestBackend(false)
+                : calibration.getBackend();
+    }
+
+    /**
+     * Returns all calibrations which have been made in current process or have been loaded from storage.
+     *
+     * @return List of calibrations.
+     */
+    @NonNull
+    public List<Calibration> getCalibrations() {
+        return new ArrayList<>(calibrations.values());
+    }
+
+    /**
+     * Returns how many times backend have been used.
+     *
+     * @param backend Backend;
+     * @return Count of usages.
+     */
+    public long getUsagesCount(@NonNull final Backend backend) {
+        return usagesCounts[backend.ordinal()].get();
+    }
+
+    /**
+     * Returns average time of blur by backend in nanoseconds (calibrations are not included).
+     *
+     * @param backend Backend;
+     * @return Average time of blur.
+     */
+    public long getAverageNanos(@NonNull final Backend backend) {
+        final long count = usagesCounts[backend.ordinal()].get();
+        return count > 0 ? usagesNanos[backend.ordinal()].get() / count : 0;
+    }
+
+    /**
+     * Returns how many times RenderScript have failed and other backend have been used instead.
+     *
+     * @return Count of fallbacks.
+     */
+    public long getFallbacksCount() {
+        return fallbacksCount.get();
+    }
+
+    /**
+     * Returns if RenderScript have failed several times in a row on this device.
+     *
+     * @return True if RenderScript is not used anymore.
+     */
+    public boolean isRenderscriptFailed() {
+        return renderscriptFailed;
+    }
+
+    /**
+     * Drops all calibrations so every bucket will be calibrated again.
+     */
+    public void resetCalibrations() {
+        calibrations.clear();
+        renderscriptFailed = false;
+        renderscriptFailuresInRow.set(0);
+        preferences.edit().clear().putString(FINGERPRINT_KEY, Build.FINGERPRINT).apply();
+    }
+
+    @NonNull
+    private String getCalibrationKey(final int width, final int height, final int radius) {
+        return CALIBRATION_KEY_PREFIX + getBucket(width * height) + '_' + getBucket(radius);
+    }
+
+    @Nullable
+    private Calibration getCalibration(@NonNull final String key) {
+        Calibration calibration = calibrations.get(key);
+        if (calibration == null) {
+            calibration = Calibration.parse(preferences.getString(key, null));
+            if (calibration != null) {
+                calibrations.put(key, calibration);
+            }
+        }
+        return calibration;
+    }
+
+    @NonNull
+    private Calibration calibrate(@NonNull final String key, @NonNull final Bitmap bitmap, final int radius) {
+        final long[] nanos = new long[Backend.values().length];
+        for (final Backend backend : Backend.values()) {
+            nanos[backend.ordinal()] = NOT_MEASURED;
+            if (!backend.supportsRadius(radius) || (backend == Backend.RENDERSCRIPT && renderscriptFailed)) {
+                continue;
+            }
+            final Bitmap copy = bitmap.copy(Bitmap.Config.ARGB_8888, true);
+            // first blur is warming up backend (e.g. creating RenderScript context)
+            if (blur(backend, copy, radius)) {
+                final long startTime = System.nanoTime();
+                if (blur(backend, copy, radius)) {
+                    nanos[backend.ordinal()] = System.nanoTime() - startTime;
+                }
+            }
+            copy.recycle();
+        }
+        final Calibration calibration = new Calibration(key, nanos);
+        calibrations.put(key, calibration);
+        preferences.edit().putString(key, calibration.serialize()).apply();
+        UiUtils.UI_METRICS_LC_GROUP.i("Blur calibrated for %dx%d radius %d: %s", bitmap.getWidth(), bitmap.getHeight(), radius, calibration);
+        return calibration;
+    }
+
+    private boolean blur(@NonNull final Backend backend, @NonNull final Bitmap bitmap, final int radius) {
+        switch (backend) {
+            case RENDERSCRIPT:
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                    return false;
+                }
+                try {
+                    BlurUtils.blurRenderscript(context, bitmap, radius);
+                    renderscriptFailuresInRow.set(0);
+                    return true;
+                } catch (final RSRuntimeException exception) {
+                    Lc.e(exception, "RenderScript failed, falling back to other blur");
+                    fallbacksCount.incrementAndGet();
+                    if (renderscriptFailuresInRow.incrementAndGet() >= MAX_RENDERSCRIPT_FAILURES_IN_ROW && !renderscriptFailed) {
+                        renderscriptFailed = true;
+                        preferences.edit().putBoolean(RENDERSCRIPT_FAILED_KEY, true).apply();
+                    }
+                    return false;
+                }
+            case STACK_BLUR:
+                BlurUtils.blurFast(bitmap, radius, true);
+                return true;
+            case STACK_BLUR_PARALLEL:
+                return BlurUtils.blurFastParallel(bitmap, radius, true) != null;
+            default:
+                Lc.assertion("Unexpected backend " + backend);
+                return false;
+        }
+    }
+
+    /**
+     * Backend of blur.
+     */
+    public enum Backend {
+        /**
+         * {@link BlurUtils#blurRenderscript(Context, Bitmap, int)}. It is used only for radius up to {@link RenderscriptBlurEngine#MAX_RADIUS}.
+         */
+        RENDERSCRIPT,
+        /**
+         * {@link BlurUtils#blurFast(Bitmap, int, boolean)}.
+         */
+        STACK_BLUR,
+        /**
+         * {@link BlurUtils#blurFastParallel(Bitmap, int, boolean)}.
+         */
+        STACK_BLUR_PARALLEL;
+
+        private boolean supportsRadius(final int radius) {
+            return this != RENDERSCRIPT || radius <= RenderscriptBlurEngine.MAX_RADIUS;
+        }
+
+    }
+
+    /**
+     * Result of calibration of size and radius bucket.
+     */
+    public static class Calibration {
+
+        @Nullable
+        private static Calibration parse(@Nullable final String serialized) {
+            if (serialized == null) {
+                return null;
+            }
+            final String[] parts = serialized.split(SEPARATOR);
+            if (parts.length != Backend.values().length + 1) {
+                return null;
+            }
+            final long[] nanos = new long[Backend.values().length];
+            try {
+                for (int i = 0; i < nanos.length; i++) {
+                    nanos[i] = Long.parseLong(parts[i + 1]);
+                }
+            } catch (final NumberFormatException exception) {
+                return null;
+            }
+            return new Calibration(parts[0], nanos);
+        }
+
+        @NonNull
+        private final String key;
+        @NonNull
+        private final long[] nanos;
+        @NonNull
+        private final Backend backend;
+
+        private Calibration(@NonNull final String key, @NonNull final long[] nanos) {
+            this.key = key;
+            this.nanos = nanos;
+            this.backend = getFastestBackend(true);
+        }
+
+        @NonNull
+        private Backend getFastestBackend(final boolean withRenderscript) {
+            Backend result = Backend.STACK_BLUR;
+            for (final Backend candidate : Backend.values()) {
+                if ((withRenderscript || candidate != Backend.RENDERSCRIPT) && nanos[candidate.ordinal()] != NOT_MEASURED
+                        && (nanos[result.ordinal()] == NOT_MEASURED || nanos[candidate.ordinal()] < nanos[result.ordinal()])) {
+                    result = candidate;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns key of size and radius bucket.
+         *
+         * @return Key of bucket.
+         */
+        @NonNull
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Returns fastest backend.
+         *
+         * @return Chosen backend.
+         */
+        @NonNull
+        public Backend getBackend() {
+            return backend;
+        }
+
+        /**
+         * Returns measured time of blur by backend in nanoseconds.
+         *
+         * @param backend Backend;
+         * @return Time of blur or -1 if backend was not available.
+         */
+        public long getNanos(@NonNull final Backend backend) {
+            return nanos[backend.ordinal()];
+        }
+
+        @NonNull
+        private String serialize() {
+            final StringBuilder result = new StringBuilder(key);
+            for (final long backendNanos : nanos) {
+                result.append(SEPARATOR).append(backendNanos);
+            }
+            return result.toString();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            final StringBuilder result = new StringBuilder(key).append(": chosen=").append(backend);
+            for (final Backend candidate : Backend.values()) {
+                result.append(' ').append(candidate).append('=').append(nanos[candidate.ordinal()]).append("ns");
+            }
+            return result.toString();
+        }
+
+    }
+
+}
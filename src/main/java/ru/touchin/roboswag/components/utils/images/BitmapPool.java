@@ -0,0 +1,186 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.utils.images;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Pool of mutable bitmaps of same size and config which could be reused as destinations of blur instead of creating new ones.
+ * Pool is limited by size in bytes. If it is exceeded then bitmaps of least recently used size are recycled.
+ * Bitmaps are taken by {@link #obtain(int, int, Bitmap.Config)} and given back by {@link #release(Bitmap)} when they are not used anymore.
+ * Hit rate and bytes which were not allocated thanks to pool are available as metrics.
+ * Methods are synchronized so pool could be shared between threads.
+ */
+public class BitmapPool {
+
+    private static long getKey(final int width, final int height, @NonNull final Bitmap.Config config) {
+        return ((long) width << 32) | ((long) height << 4) | config.ordinal();
+    }
+
+    @NonNull
+    private final LinkedHashMap<Long, ArrayDeque<Bitmap>> pooledBitmaps = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxSizeBytes;
+    private long sizeBytes;
+    private long hits;
+    private long misses;
+    private long savedBytes;
+
+    /**
+     * Creates pool.
+     *
+     * @param maxSizeBytes Maximum size in bytes of pooled bitmaps.
+     */
+    public BitmapPool(final long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Returns mutable bitmap from pool or creates new one. Content of pooled bitmap is not cleared.
+     *
+     * @param width  Width of bitmap;
+     * @param height Height of bitmap;
+     * @param config Config of bitmap;
+     * @return Mutable bitmap.
+     */
+    @NonNull
+    public Bitmap obtain(final int width, final int height, @NonNull final Bitmap.Config config) {
+        synchronized (this) {
+            final ArrayDeque<Bitmap> bitmaps = pooledBitmaps.get(getKey(width, height, config));
+            final Bitmap bitmap = bitmaps != null ? bitmaps.poll() : null;
+            if (bitmap != null) {
+                if (bitmaps.isEmpty()) {
+                    pooledBitmaps.remove(getKey(width, height, config));
+                }
+                sizeBytes -= bitmap.getByteCount();
+                savedBytes += bitmap.getByteCount();
+                hits++;
+                return bitmap;
+            }
+            misses++;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Gives bitmap back to pool. It should not be used after that. Immutable and recycled bitmaps are ignored.
+     *
+     * @param bitmap Bitmap which is not used anymore.
+     */
+    public synchronized void release(@NonNull final Bitmap bitmap) {
+        if (!bitmap.isMutable() || bitmap.isRecycled() || bitmap.getConfig() == null || bitmap.getByteCount() > maxSizeBytes) {
+            return;
+        }
+        final long key = getKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque<Bitmap> bitmaps = pooledBitmaps.get(key);
+        if (bitmaps == null) {
+            bitmaps = new ArrayDeque<>();
+            pooledBitmaps.put(key, bitmaps);
+        }
+        bitmaps.add(bitmap);
+        sizeBytes += bitmap.getByteCount();
+        trimToSize(maxSizeBytes);
+    }
+
+    /**
+     * Recycles least recently used bitmaps so pool is taking not more than specific size.
+     *
+     * @param maxBytes Maximum size of pool after trimming.
+     */
+    public synchronized void trimToSize(final long maxBytes) {
+        final Iterator<Map.Entry<Long, ArrayDeque<Bitmap>>> iterator = pooledBitmaps.entrySet().iterator();
+        while (sizeBytes > maxBytes && iterator.hasNext()) {
+            final ArrayDeque<Bitmap> bitmaps = iterator.next().getValue();
+            while (sizeBytes > maxBytes && !bitmaps.isEmpty()) {
+                final Bitmap bitmap = bitmaps.poll();
+                sizeBytes -= bitmap.getByteCount();
+                bitmap.recycle();
+            }
+            if (bitmaps.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Recycles all pooled bitmaps. Call it when memory is low.
+     */
+    public void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * Returns size in bytes of pooled bitmaps.
+     *
+     * @return Size of pool.
+     */
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Returns how many times bitmaps have been taken from pool.
+     *
+     * @return Count of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns how many times there were no bitmaps in pool to take.
+     *
+     * @return Count of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns part of {@link #obtain(int, int, Bitmap.Config)} calls which have taken bitmap from pool.
+     *
+     * @return Hit rate from 0 to 1.
+     */
+    public synchronized float getHitRate() {
+        return hits + misses > 0 ? (float) hits / (hits + misses) : 0;
+    }
+
+    /**
+     * Returns size in bytes of bitmaps which have been taken from pool instead of allocation.
+     *
+     * @return Saved bytes.
+     */
+    public synchronized long getSavedBytes() {
+        return savedBytes;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool: size=" + sizeBytes + '/' + maxSizeBytes + " hits=" + hits + " misses=" + misses + " savedBytes=" + savedBytes;
+    }
+
+}
@@ -0,0 +1,241 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.utils.images;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+
+import ru.touchin.roboswag.components.utils.LifecycleBindable;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Single;
+import rx.Subscription;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Asynchronous blur of bitmaps on dedicated background thread.
+ * Blurred bitmaps are kept in LRU cache which is limited by size in bytes. Key of cache is identity of source bitmap (and it's generation ID
+ * so changed bitmap is blurred again), radius and scale of blur. Same requests which are executing at same time are coalesced into one blur.
+ * Requests could be bound to some target (e.g. view) via {@link #blurInto} so new request of target is cancelling previous one
+ * and request is cancelling when element of {@link LifecycleBindable} stops. Request is not blurring anything if it is cancelled before start.
+ * Blurred bitmaps are shared between requests so they should not be modified or recycled.
+ */
+public class BlurService {
+
+    @NonNull
+    private final Scheduler scheduler = Schedulers.from(Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "BlurService");
+        thread.setDaemon(true);
+        return thread;
+    }));
+    @NonNull
+    private final LruCache<Key, Bitmap> cache;
+    @NonNull
+    private final Map<Key, Observable<Bitmap>> executingRequests = new HashMap<>();
+    @NonNull
+    private final Map<Object, TargetRequest> targetRequests = new WeakHashMap<>();
+
+    /**
+     * Creates service.
+     *
+     * @param maxCacheBytes Maximum size in bytes of blurred bitmaps in cache.
+     */
+    public BlurService(final int maxCacheBytes) {
+        cache = new LruCache<Key, Bitmap>(maxCacheBytes) {
+            @Override
+            protected int sizeOf(@NonNull final Key key, @NonNull final Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns {@link Single} which emits blurred copy of bitmap. Blur is executing on subscription on background thread
+     * or blurred bitmap is taken from cache.
+     *
+     * @param source Bitmap to blur. It should not be recycled until blur ends;
+     * @param radius Radius of blur in pixels of source;
+     * @param scale  Scale of blurred bitmap relative to source from 0 to 1. Smaller scale is faster and takes less memory;
+     * @return {@link Single} to blur.
+     */
+    @NonNull
+    public Single<Bitmap> blur(@NonNull final Bitmap source, final int radius, final float scale) {
+        return Observable.defer(() -> {
+            final Key key = new Key(source, radius, scale);
+            final Bitmap cachedBitmap = cache.get(key);
+            if (cachedBitmap != null) {
+                return Observable.just(cachedBitmap);
+            }
+            synchronized (executingRequests) {
+                Observable<Bitmap> request = executingRequests.get(key);
+                if (request == null) {
+                    request = Observable.fromCallable(() -> createBlurred(source, radius, scale))
+                            .subscribeOn(scheduler)
+                            .doOnNext(blurredBitmap -> cache.put(key, blurredBitmap))
+                            // calls on completion or when all subscribers have unsubscribed
+                            .doOnUnsubscribe(() -> {
+                                synchronized (executingRequests) {
+                                    executingRequests.remove(key);
+                                }
+                            })
+                            .share();
+                    executingRequests.put(key, request);
+                }
+                return request;
+            }
+        }).toSingle();
+    }
+
+    /**
+     * Blurs bitmap until element of {@link LifecycleBindable} stops and cancels previous request for same target.
+     * Should be called from main thread.
+     *
+     * @param lifecycleBindable Element to bind request to;
+     * @param target            Target of request (e.g. view which is showing blurred bitmap). It is kept weakly until request ends;
+     * @param source            Bitmap to blur. It should not be recycled until blur ends;
+     * @param radius            Radius of blur in pixels of source;
+     * @param scale             Scale of blurred bitmap relative to source from 0 to 1;
+     * @param onBlurredAction   Action which is called on main thread with blurred bitmap;
+     * @return {@link Subscription} of request.
+     */
+    @NonNull
+    @SuppressWarnings({"PMD.ExcessiveParameterList", "checkstyle:ParameterNumber"})
+    public Subscription blurInto(@NonNull final LifecycleBindable lifecycleBindable, @NonNull final Object target,
+                                 @NonNull final Bitmap source, final int radius, final float scale, @NonNull final Action1<Bitmap> onBlurredAction) {
+        cancel(target);
+        final TargetRequest targetRequest = new TargetRequest();
+        synchronized (targetRequests) {
+            targetRequests.put(target, targetRequest);
+        }
+        final Subscription subscription = lifecycleBindable.untilStop(blur(source, radius, scale)
+                .doOnUnsubscribe(() -> {
+                    synchronized (targetRequests) {
+                        if (targetRequests.get(target) == targetRequest) {
+                            targetRequests.remove(target);
+                        }
+                    }
+                }), onBlurredAction);
+        targetRequest.subscription = subscription;
+        return subscription;
+    }
+
+    /**
+     * Cancels request for target which was started by {@link #blurInto}.
+     *
+     * @param target Target of request.
+     */
+    public void cancel(@NonNull final Object target) {
+        final TargetRequest targetRequest;
+        synchronized (targetRequests) {
+            targetRequest = targetRequests.remove(target);
+        }
+        if (targetRequest != null && targetRequest.subscription != null) {
+            targetRequest.subscription.unsubscribe();
+        }
+    }
+
+    /**
+     * Removes all blurred bitmaps from cache. Call it when memory is low.
+     */
+    public void clearCache() {
+        cache.evictAll();
+    }
+
+    /**
+     * Removes part of blurred bitmaps from cache so cache is taking not more than specific size.
+     *
+     * @param maxBytes Maximum size of cache after trimming.
+     */
+    public void trimCache(final int maxBytes) {
+        cache.trimToSize(maxBytes);
+    }
+
+    @NonNull
+    private Bitmap createBlurred(@NonNull final Bitmap source, final int radius, final float scale) {
+        final int width = Math.max(1, Math.round(source.getWidth() * scale));
+        final int height = Math.max(1, Math.round(source.getHeight() * scale));
+        Bitmap result = Bitmap.createScaledBitmap(source, width, height, true);
+        if (result == source || !result.isMutable() || result.getConfig() != Bitmap.Config.ARGB_8888) {
+            final Bitmap copy = result.copy(Bitmap.Config.ARGB_8888, true);
+            if (result != source) {
+                result.recycle();
+            }
+            result = copy;
+        }
+        BlurUtils.blurScaled(result, Math.max(1, Math.round(radius * scale)), true);
+        return result;
+    }
+
+    private static class TargetRequest {
+
+        @Nullable
+        private volatile Subscription subscription;
+
+    }
+
+    private static class Key {
+
+        @NonNull
+        private final WeakReference<Bitmap> source;
+        private final int sourceHashCode;
+        private final int generationId;
+        private final int radius;
+        private final float scale;
+
+        public Key(@NonNull final Bitmap source, final int radius, final float scale) {
+            this.source = new WeakReference<>(source);
+            this.sourceHashCode = System.identityHashCode(source);
+            this.generationId = source.getGenerationId();
+            this.radius = radius;
+            this.scale = scale;
+        }
+
+        @Override
+        public boolean equals(@Nullable final Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) object;
+            final Bitmap bitmap = source.get();
+            return bitmap != null && bitmap == key.source.get() && generationId == key.generationId && radius == key.radius
+                    && Float.compare(scale, key.scale) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((sourceHashCode * 31 + generationId) * 31 + radius) * 31 + Float.floatToIntBits(scale);
+        }
+
+    }
+
+}
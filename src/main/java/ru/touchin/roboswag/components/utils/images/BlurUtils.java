@@ -14,310 +14,294 @@
 package ru.touchin.roboswag.components.utils.images;
 
 import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.os.Build;
-import android.renderscript.Allocation;
-import android.renderscript.Element;
 import android.renderscript.RSRuntimeException;
-import android.renderscript.RenderScript;
-import android.renderscript.ScriptIntrinsicBlur;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public final class BlurUtils {
 
-    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    @NonNull
+    private static final StackBlur STACK_BLUR = new StackBlur();
+    @NonNull
+    private static final ScaledBlur SCALED_BLUR = new ScaledBlur(STACK_BLUR);
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final long BITMAP_POOL_PART_OF_MEMORY = 16;
+    @NonNull
+    private static final BitmapPool BITMAP_POOL = new BitmapPool(Runtime.getRuntime().maxMemory() / BITMAP_POOL_PART_OF_MEMORY);
+
     @Nullable
-    public static Bitmap blurRenderscript(@NonNull final Context context, @NonNull final Bitmap bitmap, final int radius) throws RSRuntimeException {
-        RenderScript rs = null;
-        Allocation input = null;
-        Allocation output = null;
-        ScriptIntrinsicBlur blur = null;
-        try {
-            rs = RenderScript.create(context);
-            rs.setMessageHandler(new RenderScript.RSMessageHandler());
-            input = Allocation.createFromBitmap(rs, bitmap, Allocation.MipmapControl.MIPMAP_NONE,
-                    Allocation.USAGE_SCRIPT);
-            output = Allocation.createTyped(rs, input.getType());
-            blur = ScriptIntrinsicBlur.create(rs, Element.U8_4(rs));
+    private static ExecutorService parallelExecutor;
+    @Nullable
+    private static AdaptiveBlur adaptiveBlur;
+
+    /**
+     * Returns pool of bitmaps which is used for destination bitmaps of blur methods when sent bitmap could not be reused.
+     * Give bitmaps which are not used anymore back to it by {@link BitmapPool#release(Bitmap)}.
+     *
+     * @return Shared pool of bitmaps.
+     */
+    @NonNull
+    public static BitmapPool getBitmapPool() {
+        return BITMAP_POOL;
+    }
 
-            blur.setInput(input);
-            blur.setRadius(radius);
-            blur.forEach(output);
-            output.copyTo(bitmap);
-        } finally {
-            if (rs != null) {
-                rs.destroy();
-            }
-            if (input != null) {
-                input.destroy();
-            }
-            if (output != null) {
-                output.destroy();
-            }
-            if (blur != null) {
-                blur.destroy();
-            }
+    /**
+     * Returns {@link AdaptiveBlur} which is shared inside application so calibrations of blur backends are made once.
+     *
+     * @param context Any context;
+     * @return Blur by fastest backend of device.
+     */
+    @NonNull
+    public static synchronized AdaptiveBlur getAdaptiveBlur(@NonNull final Context context) {
+        if (adaptiveBlur == null) {
+            adaptiveBlur = new AdaptiveBlur(context);
         }
+        return adaptiveBlur;
+    }
+
+    /**
+     * Blurs bitmap in place via shared {@link RenderscriptBlurEngine} so RenderScript context and allocations are reused between calls.
+     *
+     * @param context Any context;
+     * @param bitmap  Mutable bitmap in {@link Bitmap.Config#ARGB_8888} config;
+     * @param radius  Radius of blur from 1 to {@link RenderscriptBlurEngine#MAX_RADIUS};
+     * @return Same blurred bitmap. It is never null: if RenderScript fails then exception is thrown.
+     * @throws RSRuntimeException If RenderScript is not working on device.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    @NonNull
+    public static Bitmap blurRenderscript(@NonNull final Context context, @NonNull final Bitmap bitmap, final int radius) throws RSRuntimeException {
+        return blurRenderscript(context, bitmap, bitmap, radius);
+    }
 
-        return bitmap;
+    /**
+     * Blurs source bitmap into destination bitmap via shared {@link RenderscriptBlurEngine}.
+     *
+     * @param context     Any context;
+     * @param source      Bitmap in {@link Bitmap.Config#ARGB_8888} config to blur. It is not changed if it is not destination;
+     * @param destination Mutable bitmap of same size and config (e.g. from {@link #getBitmapPool()}) or source itself;
+     * @param radius      Radius of blur from 1 to {@link RenderscriptBlurEngine#MAX_RADIUS};
+     * @return Destination bitmap.
+     * @throws RSRuntimeException If RenderScript is not working on device.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    @NonNull
+    public static Bitmap blurRenderscript(@NonNull final Context context, @NonNull final Bitmap source, @NonNull final Bitmap destination,
+                                          final int radius) throws RSRuntimeException {
+        RenderscriptBlurEngine.getInstance(context).blur(source, destination, radius);
+        return destination;
     }
 
+    /**
+     * Blurs bitmap via {@link StackBlur} which is reusing it's buffers between calls.
+     *
+     * @param sentBitmap       Bitmap to blur;
+     * @param radius           Radius of blur;
+     * @param canReuseInBitmap If true then sent bitmap is blurred in place (it should be mutable), else it is blurred into pooled bitmap;
+     * @return Blurred bitmap or null if radius is less than 1.
+     */
     @Nullable
-    @SuppressWarnings({"PMD.ExcessiveMethodLength", "PMD.CyclomaticComplexity", "PMD.ModifiedCyclomaticComplexity", "PMD.StdCyclomaticComplexity",
-            "PMD.NcssMethodCount", "PMD.NPathComplexity", "checkstyle:MethodLength", "checkstyle:LocalFinalVariableName",
-            "checkstyle:ArrayTypeStyle", "checkstyle:InnerAssignment", "checkstyle:LocalVariableName"})
     public static Bitmap blurFast(@NonNull final Bitmap sentBitmap, final int radius, final boolean canReuseInBitmap) {
+        return blurSent(sentBitmap, radius, canReuseInBitmap, STACK_BLUR::blur);
+    }
 
-        // Stack Blur v1.0 from
-        // http://www.quasimondo.com/StackBlurForCanvas/StackBlurDemo.html
-        //
-        // Java Author: Mario Klingemann <mario at quasimondo.com>
-        // http://incubator.quasimondo.com
-        // created Feburary 29, 2004
-        // Android port : Yahel Bouaziz <yahel at kayenko.com>
-        // http://www.kayenko.com
-        // ported april 5th, 2012
-
-        // This is a compromise between Gaussian Blur and Box blur
-        // It creates much better looking blurs than Box Blur, but is
-        // 7x faster than my Gaussian Blur implementation.
-        //
-        // I called it Stack Blur because this describes best how this
-        // filter works internally: it creates a kind of moving stack
-        // of colors whilst scanning through the image. Thereby it
-        // just has to add one new block of color to the right side
-        // of the stack and remove the leftmost color. The remaining
-        // colors on the topmost layer of the stack are either added on
-        // or reduced by one, depending on if they are on the right or
-        // on the left side of the stack.
-        //
-        // If you are using this algorithm in your code please add
-        // the following line:
-        //
-        // Stack Blur Algorithm by Mario Klingemann <mario@quasimondo.com>
-
-        final Bitmap bitmap;
-        if (canReuseInBitmap) {
-            bitmap = sentBitmap;
-        } else {
-            bitmap = sentBitmap.copy(sentBitmap.getConfig(), true);
-        }
-
-        if (radius < 1) {
-            return null;
-        }
-
-        final int w = bitmap.getWidth();
-        final int h = bitmap.getHeight();
-
-        final int[] pix = new int[w * h];
-        bitmap.getPixels(pix, 0, w, 0, 0, w, h);
-
-        final int wm = w - 1;
-        final int hm = h - 1;
-        final int wh = w * h;
-        final int div = radius + radius + 1;
-
-        final int r[] = new int[wh];
-        final int g[] = new int[wh];
-        final int b[] = new int[wh];
-        int rsum;
-        int gsum;
-        int bsum;
-        int x;
-        int i;
-        int p;
-        int yp;
-        int yi;
-        int yw;
-        final int vmin[] = new int[Math.max(w, h)];
+    /**
+     * Blurs source bitmap into destination bitmap via {@link StackBlur} without allocation of bitmaps.
+     *
+     * @param source      Bitmap to blur. It is not changed if it is not destination;
+     * @param radius      Radius of blur;
+     * @param destination Mutable bitmap of same size (e.g. from {@link #getBitmapPool()}) or source itself;
+     * @return Destination bitmap or null if radius is less than 1.
+     */
+    @Nullable
+    public static Bitmap blurFast(@NonNull final Bitmap source, final int radius, @NonNull final Bitmap destination) {
+        return blurPixels(source, destination, radius, STACK_BLUR::blur) ? destination : null;
+    }
 
-        int divsum = (div + 1) >> 1;
-        divsum *= divsum;
-        final int dv[] = new int[256 * divsum];
-        for (i = 0; i < 256 * divsum; i++) {
-            dv[i] = i / divsum;
-        }
+    /**
+     * Same as {@link #blurFast(Bitmap, int, boolean)} but horizontal and vertical passes are split into stripes by count of cores
+     * which are blurred in parallel. Output is same as output of {@link #blurFast(Bitmap, int, boolean)}.
+     * Should be called from background thread.
+     *
+     * @param sentBitmap       Bitmap to blur;
+     * @param radius           Radius of blur;
+     * @param canReuseInBitmap If true then sent bitmap is blurred in place (it should be mutable), else it is blurred into pooled bitmap;
+     * @return Blurred bitmap or null if radius is less than 1 or if thread was interrupted.
+     */
+    @Nullable
+    public static Bitmap blurFastParallel(@NonNull final Bitmap sentBitmap, final int radius, final boolean canReuseInBitmap) {
+        return blurSent(sentBitmap, radius, canReuseInBitmap, BlurUtils::blurParallel);
+    }
 
-        yw = yi = 0;
+    /**
+     * Same as {@link #blurFast(Bitmap, int, Bitmap)} but passes are blurred in parallel. Should be called from background thread.
+     *
+     * @param source      Bitmap to blur. It is not changed if it is not destination;
+     * @param radius      Radius of blur;
+     * @param destination Mutable bitmap of same size (e.g. from {@link #getBitmapPool()}) or source itself;
+     * @return Destination bitmap or null if radius is less than 1 or if thread was interrupted.
+     */
+    @Nullable
+    public static Bitmap blurFastParallel(@NonNull final Bitmap source, final int radius, @NonNull final Bitmap destination) {
+        return blurPixels(source, destination, radius, BlurUtils::blurParallel) ? destination : null;
+    }
 
-        final int[][] stack = new int[div][3];
-        int stackpointer;
-        int stackstart;
-        int[] sir;
-        int rbs;
-        final int r1 = radius + 1;
-        int routsum;
-        int goutsum;
-        int boutsum;
-        int rinsum;
-        int ginsum;
-        int binsum;
+    /**
+     * Blurs bitmap with large radius via {@link ScaledBlur}: bitmap is downsampled by factor chosen from radius, blurred and upsampled back.
+     * Result is close to result of {@link #blurFast(Bitmap, int, boolean)} but it costs much less for radius of 12 and more
+     * and radius is not limited like in {@link #blurRenderscript(Context, Bitmap, int)}.
+     *
+     * @param sentBitmap       Bitmap to blur;
+     * @param radius           Radius of blur at full resolution;
+     * @param canReuseInBitmap If true then sent bitmap is blurred in place (it should be mutable), else it is blurred into pooled bitmap;
+     * @return Blurred bitmap or null if radius is less than 1.
+     */
+    @Nullable
+    public static Bitmap blurScaled(@NonNull final Bitmap sentBitmap, final int radius, final boolean canReuseInBitmap) {
+        return blurSent(sentBitmap, radius, canReuseInBitmap, SCALED_BLUR::blur);
+    }
 
-        int y;
+    /**
+     * Same as {@link #blurScaled(Bitmap, int, boolean)} but source bitmap is blurred into destination bitmap.
+     *
+     * @param source      Bitmap to blur. It is not changed if it is not destination;
+     * @param radius      Radius of blur at full resolution;
+     * @param destination Mutable bitmap of same size (e.g. from {@link #getBitmapPool()}) or source itself;
+     * @return Destination bitmap or null if radius is less than 1.
+     */
+    @Nullable
+    public static Bitmap blurScaled(@NonNull final Bitmap source, final int radius, @NonNull final Bitmap destination) {
+        return blurPixels(source, destination, radius, SCALED_BLUR::blur) ? destination : null;
+    }
 
-        for (y = 0; y < h; y++) {
-            rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
-            for (i = -radius; i <= radius; i++) {
-                p = pix[yi + Math.min(wm, Math.max(i, 0))];
-                sir = stack[i + radius];
-                sir[0] = (p & 0xff0000) >> 16;
-                sir[1] = (p & 0x00ff00) >> 8;
-                sir[2] = p & 0x0000ff;
-                rbs = r1 - Math.abs(i);
-                rsum += sir[0] * rbs;
-                gsum += sir[1] * rbs;
-                bsum += sir[2] * rbs;
-                if (i > 0) {
-                    rinsum += sir[0];
-                    ginsum += sir[1];
-                    binsum += sir[2];
-                } else {
-                    routsum += sir[0];
-                    goutsum += sir[1];
-                    boutsum += sir[2];
-                }
+    /**
+     * Updates blurred bitmap after change of rectangle of source bitmap. Only changed rectangle with margins is blurred again
+     * so cost is proportional to changed area (e.g. for frosted header over scrolling content). Result is same as result of
+     * {@link #blurFast(Bitmap, int, boolean)} of whole source bitmap.
+     *
+     * @param source  Source bitmap after change. It is not changed;
+     * @param blurred Mutable bitmap of same size which is blurred source bitmap before change. It is updated in place;
+     * @param radius  Radius of blur;
+     * @param dirty   Changed rectangle of source bitmap.
+     */
+    public static void blurRegion(@NonNull final Bitmap source, @NonNull final Bitmap blurred, final int radius, @NonNull final Rect dirty) {
+        STACK_BLUR.blurRegion(new StackBlur.RegionPixels() {
+            @Override
+            public void readSource(@NonNull final int[] region, final int regionLeft, final int regionTop,
+                                   final int regionWidth, final int regionHeight) {
+                source.getPixels(region, 0, regionWidth, regionLeft, regionTop, regionWidth, regionHeight);
             }
-            stackpointer = radius;
-
-            for (x = 0; x < w; x++) {
-
-                r[yi] = dv[rsum];
-                g[yi] = dv[gsum];
-                b[yi] = dv[bsum];
-
-                rsum -= routsum;
-                gsum -= goutsum;
-                bsum -= boutsum;
-
-                stackstart = stackpointer - radius + div;
-                sir = stack[stackstart % div];
 
-                routsum -= sir[0];
-                goutsum -= sir[1];
-                boutsum -= sir[2];
-
-                if (y == 0) {
-                    vmin[x] = Math.min(x + radius + 1, wm);
-                }
-                p = pix[yw + vmin[x]];
-
-                sir[0] = (p & 0xff0000) >> 16;
-                sir[1] = (p & 0x00ff00) >> 8;
-                sir[2] = p & 0x0000ff;
-
-                rinsum += sir[0];
-                ginsum += sir[1];
-                binsum += sir[2];
-
-                rsum += rinsum;
-                gsum += ginsum;
-                bsum += binsum;
-
-                stackpointer = (stackpointer + 1) % div;
-                sir = stack[stackpointer % div];
-
-                routsum += sir[0];
-                goutsum += sir[1];
-                boutsum += sir[2];
-
-                rinsum -= sir[0];
-                ginsum -= sir[1];
-                binsum -= sir[2];
+            @Override
+            @SuppressWarnings({"PMD.ExcessiveParameterList", "checkstyle:ParameterNumber"})
+            public void writeTarget(@NonNull final int[] region, final int offset, final int stride,
+                                    final int updatedLeft, final int updatedTop, final int updatedWidth, final int updatedHeight) {
+                blurred.setPixels(region, offset, stride, updatedLeft, updatedTop, updatedWidth, updatedHeight);
+            }
+        }, source.getWidth(), source.getHeight(), radius, dirty.left, dirty.top, dirty.right, dirty.bottom);
+    }
 
-                yi++;
+    @Nullable
+    private static Bitmap blurSent(@NonNull final Bitmap sentBitmap, final int radius, final boolean canReuseInBitmap,
+                                   @NonNull final PixelsBlur pixelsBlur) {
+        if (radius < 1) {
+            return null;
+        }
+        final Bitmap destination = canReuseInBitmap ? sentBitmap : obtainDestination(sentBitmap);
+        boolean blurred = false;
+        try {
+            blurred = blurPixels(sentBitmap, destination, radius, pixelsBlur);
+        } finally {
+            // pooled bitmap is not returned to caller if blur failed
+            if (!blurred && destination != sentBitmap) {
+                BITMAP_POOL.release(destination);
             }
-            yw += w;
         }
-        for (x = 0; x < w; x++) {
-            rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
-            yp = -radius * w;
-            for (i = -radius; i <= radius; i++) {
-                yi = Math.max(0, yp) + x;
-
-                sir = stack[i + radius];
-
-                sir[0] = r[yi];
-                sir[1] = g[yi];
-                sir[2] = b[yi];
-
-                rbs = r1 - Math.abs(i);
+        return blurred ? destination : null;
+    }
 
-                rsum += r[yi] * rbs;
-                gsum += g[yi] * rbs;
-                bsum += b[yi] * rbs;
+    private static void blurParallel(@NonNull final int[] pixels, final int width, final int height, final int radius) throws InterruptedException {
+        STACK_BLUR.blur(pixels, width, height, radius, getParallelExecutor(), PARALLELISM);
+    }
 
-                if (i > 0) {
-                    rinsum += sir[0];
-                    ginsum += sir[1];
-                    binsum += sir[2];
-                } else {
-                    routsum += sir[0];
-                    goutsum += sir[1];
-                    boutsum += sir[2];
-                }
+    @NonNull
+    private static Bitmap obtainDestination(@NonNull final Bitmap source) {
+        return BITMAP_POOL.obtain(source.getWidth(), source.getHeight(), source.getConfig() != null ? source.getConfig() : Bitmap.Config.ARGB_8888);
+    }
 
-                if (i < hm) {
-                    yp += w;
-                }
+    private static boolean blurPixels(@NonNull final Bitmap source, @NonNull final Bitmap destination, final int radius,
+                                      @NonNull final PixelsBlur pixelsBlur) {
+        if (radius < 1) {
+            return false;
+        }
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        synchronized (STACK_BLUR) {
+            final int[] pixels = STACK_BLUR.obtainPixelsBuffer(width * height);
+            source.getPixels(pixels, 0, width, 0, 0, width, height);
+            try {
+                pixelsBlur.blur(pixels, width, height, radius);
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return false;
             }
-            yi = x;
-            stackpointer = radius;
-            for (y = 0; y < h; y++) {
-                // Preserve alpha channel: ( 0xff000000 & pix[yi] )
-                pix[yi] = (0xff000000 & pix[yi]) | (dv[rsum] << 16) | (dv[gsum] << 8) | dv[bsum];
-
-                rsum -= routsum;
-                gsum -= goutsum;
-                bsum -= boutsum;
-
-                stackstart = stackpointer - radius + div;
-                sir = stack[stackstart % div];
-
-                routsum -= sir[0];
-                goutsum -= sir[1];
-                boutsum -= sir[2];
-
-                if (x == 0) {
-                    vmin[y] = Math.min(y + r1, hm) * w;
-                }
-                p = x + vmin[y];
-
-                sir[0] = r[p];
-                sir[1] = g[p];
-                sir[2] = b[p];
-
-                rinsum += sir[0];
-                ginsum += sir[1];
-                binsum += sir[2];
-
-                rsum += rinsum;
-                gsum += ginsum;
-                bsum += binsum;
-
-                stackpointer = (stackpointer + 1) % div;
-                sir = stack[stackpointer];
-
-                routsum += sir[0];
-                goutsum += sir[1];
-                boutsum += sir[2];
-
-                rinsum -= sir[0];
-                ginsum -= sir[1];
-                binsum -= sir[2];
+            destination.setPixels(pixels, 0, width, 0, 0, width, height);
+        }
+        return true;
+    }
 
-                yi += w;
-            }
+    @NonNull
+    private static synchronized ExecutorService getParallelExecutor() {
+        if (parallelExecutor == null) {
+            // calling thread is blurring one of stripes itself
+            parallelExecutor = Executors.newFixedThreadPool(Math.max(1, PARALLELISM - 1), runnable -> {
+                final Thread thread = new Thread(runnable, "BlurUtils");
+                thread.setDaemon(true);
+                return thread;
+            });
         }
+        return parallelExecutor;
+    }
 
-        bitmap.setPixels(pix, 0, w, 0, 0, w, h);
+    /**
+     * Releases memory kept by blur methods when memory is running low: buffers of blur and pooled bitmaps.
+     * RenderScript resources are released by {@link RenderscriptBlurEngine} itself.
+     *
+     * @param level Level of trimming like {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW}.
+     */
+    public static void onTrimMemory(final int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            releaseBuffers();
+            BITMAP_POOL.clear();
+        }
+    }
 
-        return bitmap;
+    /**
+     * Removes buffers which are kept by {@link #blurFast(Bitmap, int, boolean)} and {@link #blurScaled(Bitmap, int, boolean)}.
+     * Call it when memory is low.
+     */
+    public static void releaseBuffers() {
+        // same order of locks as in blur methods
+        synchronized (STACK_BLUR) {
+            SCALED_BLUR.releaseBuffers();
+        }
     }
 
     private BlurUtils() {
     }
 
+    private interface PixelsBlur {
+
+        void blur(@NonNull int[] pixels, int width, int height, int radius) throws InterruptedException;
+
+    }
+
 }
@@ -0,0 +1,205 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.utils.images;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.renderscript.Allocation;
+import android.renderscript.Element;
+import android.renderscript.RSRuntimeException;
+import android.renderscript.RenderScript;
+import android.renderscript.ScriptIntrinsicBlur;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Long-lived RenderScript blur which keeps single {@link RenderScript} context and {@link ScriptIntrinsicBlur}
+ * and reuses {@link Allocation}s of last used sizes of bitmaps so repeated blur (e.g. blurred backdrop on scroll) is not creating them every time.
+ * Allocations are released when memory is running low and everything is released when UI is hidden.
+ * Methods are synchronized so it could be used from any thread but it is designed for single background worker.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+public final class RenderscriptBlurEngine implements ComponentCallbacks2 {
+
+    /**
+     * Maximum radius supported by {@link ScriptIntrinsicBlur}.
+     */
+    public static final int MAX_RADIUS = 25;
+    private static final int MAX_CACHED_ALLOCATIONS = 3;
+
+    @Nullable
+    private static RenderscriptBlurEngine instance;
+
+    /**
+     * Returns engine which is shared inside application.
+     *
+     * @param context Any context;
+     * @return Shared engine.
+     */
+    @NonNull
+    public static synchronized RenderscriptBlurEngine getInstance(@NonNull final Context context) {
+        if (instance == null) {
+            instance = new RenderscriptBlurEngine(context.getApplicationContext());
+            context.getApplicationContext().registerComponentCallbacks(instance);
+        }
+        return instance;
+    }
+
+    private static long getAllocationsKey(@NonNull final Bitmap bitmap) {
+        final Bitmap.Config config = bitmap.getConfig();
+        return ((long) bitmap.getWidth() << 32) | ((long) bitmap.getHeight() << 4) | (config != null ? config.ordinal() + 1 : 0);
+    }
+
+    @NonNull
+    private final Context context;
+    @NonNull
+    private final LinkedHashMap<Long, Allocations> allocations = new LinkedHashMap<Long, Allocations>(MAX_CACHED_ALLOCATIONS + 1, 1, true) {
+        @Override
+        protected boolean removeEldestEntry(@NonNull final Map.Entry<Long, Allocations> eldest) {
+            if (size() > MAX_CACHED_ALLOCATIONS) {
+                eldest.getValue().destroy();
+                return true;
+            }
+            return false;
+        }
+    };
+    @Nullable
+    private RenderScript renderScript;
+    @Nullable
+    private ScriptIntrinsicBlur blurScript;
+
+    private RenderscriptBlurEngine(@NonNull final Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Blurs bitmap in place.
+     *
+     * @param bitmap Mutable bitmap in {@link Bitmap.Config#ARGB_8888} config;
+     * @param radius Radius of blur from 1 to {@link #MAX_RADIUS}.
+     * @throws RSRuntimeException If RenderScript is not working on device.
+     */
+    public void blur(@NonNull final Bitmap bitmap, final int radius) throws RSRuntimeException {
+        blur(bitmap, bitmap, radius);
+    }
+
+    /**
+     * Blurs source bitmap into destination bitmap.
+     *
+     * @param source      Bitmap in {@link Bitmap.Config#ARGB_8888} config;
+     * @param destination Mutable bitmap of same size and config or source itself;
+     * @param radius      Radius of blur from 1 to {@link #MAX_RADIUS}.
+     * @throws RSRuntimeException If RenderScript is not working on device.
+     */
+    public synchronized void blur(@NonNull final Bitmap source, @NonNull final Bitmap destination, final int radius) throws RSRuntimeException {
+        if (renderScript == null || blurScript == null) {
+            renderScript = RenderScript.create(context);
+            renderScript.setMessageHandler(new RenderScript.RSMessageHandler());
+            blurScript = ScriptIntrinsicBlur.create(renderScript, Element.U8_4(renderScript));
+        }
+        final long key = getAllocationsKey(source);
+        Allocations bitmapAllocations = allocations.get(key);
+        if (bitmapAllocations == null) {
+            final Allocation input = Allocation.createFromBitmap(renderScript, source, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT);
+            bitmapAllocations = new Allocations(input, Allocation.createTyped(renderScript, input.getType()));
+            allocations.put(key, bitmapAllocations);
+        } else {
+            bitmapAllocations.input.copyFrom(source);
+        }
+        blurScript.setInput(bitmapAllocations.input);
+        blurScript.setRadius(Math.max(1, Math.min(MAX_RADIUS, radius)));
+        blurScript.forEach(bitmapAllocations.output);
+        bitmapAllocations.output.copyTo(destination);
+    }
+
+    /**
+     * Destroys cached {@link Allocation}s but keeps {@link RenderScript} context.
+     */
+    public synchronized void releaseAllocations() {
+        final Iterator<Allocations> iterator = allocations.values().iterator();
+        while (iterator.hasNext()) {
+            iterator.next().destroy();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Destroys everything. Engine will be initialized again on next {@link #blur(Bitmap, int)}.
+     */
+    public synchronized void release() {
+        releaseAllocations();
+        if (blurScript != null) {
+            blurScript.destroy();
+            blurScript = null;
+        }
+        if (renderScript != null) {
+            renderScript.destroy();
+            renderScript = null;
+        }
+    }
+
+    @Override
+    public void onTrimMemory(final int level) {
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            release();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            releaseAllocations();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        release();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull final Configuration newConfig) {
+        // do nothing
+    }
+
+    private static class Allocations {
+
+        @NonNull
+        private final Allocation input;
+        @NonNull
+        private final Allocation output;
+
+        public Allocations(@NonNull final Allocation input, @NonNull final Allocation output) {
+            this.input = input;
+            this.output = output;
+        }
+
+        public void destroy() {
+            input.destroy();
+            output.destroy();
+        }
+
+    }
+
+}
@@ -0,0 +1,526 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.utils.images;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Stack Blur (Stack Blur Algorithm by Mario Klingemann <mario@quasimondo.com>) on plain pixels without Android
+ * which output is bit-exact with original algorithm (see StackBlurReference in tests) but which is not allocating memory on every call.
+ * Result of horizontal pass is kept in single buffer of packed pixels (alpha of source and blurred RGB) instead of three channel buffers,
+ * so it needs only one scratch buffer of image size. Scratch buffers are growing to largest blurred image and reused,
+ * buffers of images which are larger than maximum cached size are not kept after blur.
+ * Passes could be run in parallel (see {@link #blur(int[], int, int, int, Executor, int)}): rows of horizontal pass and columns of vertical pass
+ * are independent so they are split into stripes which are blurred by different threads with their own stacks.
+ * If only part of source image have changed then blurred image could be updated by {@link #blurRegion}.
+ * Methods are synchronized so single instance could be shared between threads.
+ */
+public class StackBlur {
+
+    /**
+     * Default maximum count of pixels of image which buffers are kept after blur.
+     */
+    public static final int DEFAULT_MAX_CACHED_PIXELS = 1920 * 1080;
+
+    private final int maxCachedPixels;
+    private int[] packedBuffer = new int[0];
+    private int[] pixelsBuffer = new int[0];
+    private int[] nextColumns = new int[0];
+    private int[] nextRows = new int[0];
+    private int[] divisions = new int[0];
+    private int[][] stacks = new int[0][];
+    private int divisionsRadius;
+
+    public StackBlur() {
+        this(DEFAULT_MAX_CACHED_PIXELS);
+    }
+
+    /**
+     * Creates blur.
+     *
+     * @param maxCachedPixels Maximum count of pixels of image which buffers are kept after blur.
+     */
+    public StackBlur(final int maxCachedPixels) {
+        this.maxCachedPixels = maxCachedPixels;
+    }
+
+    /**
+     * Blurs pixels in place. Alpha channel is preserved.
+     *
+     * @param pixels Pixels in ARGB format row by row;
+     * @param width  Width of image;
+     * @param height Height of image;
+     * @param radius Radius of blur. Nothing happens if it is less than 1.
+     */
+    public synchronized void blur(final int[] pixels, final int width, final int height, final int radius) {
+        if (radius < 1 || width < 1 || height < 1) {
+            return;
+        }
+        final int[] packed = obtainPackedBuffer(width * height);
+        prepare(width, height, radius, 1);
+        blurRows(pixels, packed, width, radius, 0, height, nextColumns, divisions, stacks[0]);
+        blurColumns(packed, pixels, width, height, radius, 0, width, nextRows, divisions, stacks[0]);
+        releasePackedBuffer(packed);
+    }
+
+    /**
+     * Blurs pixels in place splitting every pass into stripes which are blurred in parallel. Output is same as output of serial blur.
+     * One stripe is blurred on calling thread and others are blurred by executor so executor should have at least stripes - 1 threads.
+     *
+     * @param pixels   Pixels in ARGB format row by row;
+     * @param width    Width of image;
+     * @param height   Height of image;
+     * @param radius   Radius of blur. Nothing happens if it is less than 1;
+     * @param executor Executor to blur stripes on;
+     * @param stripes  Count of stripes (usually count of cores).
+     * @throws InterruptedException If calling thread was interrupted. Stripes of current pass are finished anyway as they are using shared buffers
+     *                              but pixels are not fully blurred in that case.
+     */
+    public synchronized void blur(final int[] pixels, final int width, final int height, final int radius,
+                                  final Executor executor, final int stripes) throws InterruptedException {
+        if (radius < 1 || width < 1 || height < 1) {
+            return;
+        }
+        final int rowStripes = Math.max(1, Math.min(stripes, height));
+        final int columnStripes = Math.max(1, Math.min(stripes, width));
+        if (rowStripes == 1 && columnStripes == 1) {
+            blur(pixels, width, height, radius);
+            return;
+        }
+        final int[] packed = obtainPackedBuffer(width * height);
+        prepare(width, height, radius, Math.max(rowStripes, columnStripes));
+        try {
+            runStripes(executor, rowStripes, height, (stripe, from, to) ->
+                    blurRows(pixels, packed, width, radius, from, to, nextColumns, divisions, stacks[stripe]));
+            runStripes(executor, columnStripes, width, (stripe, from, to) ->
+                    blurColumns(packed, pixels, width, height, radius, from, to, nextRows, divisions, stacks[stripe]));
+        } finally {
+            // no stripe is running here so buffer could be reused
+            releasePackedBuffer(packed);
+        }
+    }
+
+    /**
+     * Updates blurred image after change of rectangle of source image. Only changed rectangle with margins is blurred again
+     * so cost is proportional to changed area. Result is same as result of blur of whole source image.
+     * Blurred pixels are depending on source pixels inside radius, so changed rectangle plus radius is updated in target
+     * and it is calculated from changed rectangle plus two radii of source.
+     *
+     * @param source Pixels of source image after change in ARGB format row by row. They are not changed;
+     * @param target Pixels of blurred source image before change. They are updated in place;
+     * @param width  Width of image;
+     * @param height Height of image;
+     * @param radius Radius of blur. Nothing happens if it is less than 1;
+     * @param left   Left bound of changed rectangle (inclusive);
+     * @param top    Top bound of changed rectangle (inclusive);
+     * @param right  Right bound of changed rectangle (exclusive);
+     * @param bottom Bottom bound of changed rectangle (exclusive).
+     */
+    @SuppressWarnings({"PMD.ExcessiveParameterList", "checkstyle:ParameterNumber"})
+    public synchronized void blurRegion(final int[] source, final int[] target, final int width, final int height, final int radius,
+                                        final int left, final int top, final int right, final int bottom) {
+        blurRegion(new RegionPixels() {
+            @Override
+            public void readSource(final int[] region, final int regionLeft, final int regionTop, final int regionWidth, final int regionHeight) {
+                for (int y = 0; y < regionHeight; y++) {
+                    System.arraycopy(source, (regionTop + y) * width + regionLeft, region, y * regionWidth, regionWidth);
+                }
+            }
+
+            @Override
+            @SuppressWarnings({"PMD.ExcessiveParameterList", "checkstyle:ParameterNumber"})
+            public void writeTarget(final int[] region, final int offset, final int stride,
+                                    final int updatedLeft, final int updatedTop, final int updatedWidth, final int updatedHeight) {
+                for (int y = 0; y < updatedHeight; y++) {
+                    System.arraycopy(region, offset + y * stride, target, (updatedTop + y) * width + updatedLeft, updatedWidth);
+                }
+            }
+        }, width, height, radius, left, top, right, bottom);
+    }
+
+    /**
+     * Same as {@link #blurRegion(int[], int[], int, int, int, int, int, int, int)} but pixels of source and target are accessed via
+     * {@link RegionPixels} so they could be kept not in arrays (e.g. in bitmaps).
+     */
+    @SuppressWarnings({"PMD.ExcessiveParameterList", "checkstyle:ParameterNumber"})
+    synchronized void blurRegion(final RegionPixels pixels, final int width, final int height, final int radius,
+                                 final int left, final int top, final int right, final int bottom) {
+        // changed pixels outside of image are not affecting it
+        final int changedLeft = Math.max(0, left);
+        final int changedTop = Math.max(0, top);
+        final int changedRight = Math.min(width, right);
+        final int changedBottom = Math.min(height, bottom);
+        if (radius < 1 || changedRight <= changedLeft || changedBottom <= changedTop) {
+            return;
+        }
+        final int regionLeft = Math.max(0, changedLeft - radius * 2);
+        final int regionTop = Math.max(0, changedTop - radius * 2);
+        final int regionWidth = Math.min(width, changedRight + radius * 2) - regionLeft;
+        final int regionHeight = Math.min(height, changedBottom + radius * 2) - regionTop;
+        final int[] region = obtainPixelsBuffer(regionWidth * regionHeight);
+        pixels.readSource(region, regionLeft, regionTop, regionWidth, regionHeight);
+        blur(region, regionWidth, regionHeight, radius);
+        final int updatedLeft = Math.max(0, changedLeft - radius);
+        final int updatedTop = Math.max(0, changedTop - radius);
+        pixels.writeTarget(region, (updatedTop - regionTop) * regionWidth + updatedLeft - regionLeft, regionWidth, updatedLeft, updatedTop,
+                Math.min(width, changedRight + radius) - updatedLeft, Math.min(height, changedBottom + radius) - updatedTop);
+    }
+
+    /**
+     * Returns reusable buffer for pixels of image to blur them without allocation (e.g. to get pixels of bitmap).
+     * It is package-private as buffer is shared between calls: caller should hold lock of this object while using it.
+     *
+     * @param size Minimum size of buffer;
+     * @return Buffer of pixels. It is new buffer if size is larger than maximum cached size.
+     */
+    synchronized int[] obtainPixelsBuffer(final int size) {
+        if (size <= pixelsBuffer.length) {
+            return pixelsBuffer;
+        }
+        final int[] result = new int[size];
+        if (size <= maxCachedPixels) {
+            pixelsBuffer = result;
+        }
+        return result;
+    }
+
+    /**
+     * Removes all kept buffers. Call it when memory is low.
+     */
+    public synchronized void releaseBuffers() {
+        packedBuffer = new int[0];
+        pixelsBuffer = new int[0];
+        nextColumns = new int[0];
+        nextRows = new int[0];
+        divisions = new int[0];
+        stacks = new int[0][];
+        divisionsRadius = 0;
+    }
+
+    private int[] obtainPackedBuffer(final int size) {
+        return size > packedBuffer.length ? new int[size] : packedBuffer;
+    }
+
+    private void releasePackedBuffer(final int[] packed) {
+        if (packed != packedBuffer && packed.length <= maxCachedPixels) {
+            packedBuffer = packed;
+        }
+    }
+
+    private void prepare(final int width, final int height, final int radius, final int stacksCount) {
+        if (nextColumns.length < width) {
+            nextColumns = new int[width];
+        }
+        if (nextRows.length < height) {
+            nextRows = new int[height];
+        }
+        // precomputed here instead of first row/column of passes so passes are not depending on each other
+        for (int x = 0; x < width; x++) {
+            nextColumns[x] = Math.min(x + radius + 1, width - 1);
+        }
+        for (int y = 0; y < height; y++) {
+            nextRows[y] = Math.min(y + radius + 1, height - 1) * width;
+        }
+        if (divisionsRadius != radius) {
+            divisions = createDivisions(radius);
+            divisionsRadius = radius;
+        }
+        final int stackSize = (radius + radius + 1) * 3;
+        if (stacks.length < stacksCount || stacks[0].length < stackSize) {
+            stacks = new int[Math.max(stacksCount, stacks.length)][];
+            for (int i = 0; i < stacks.length; i++) {
+                stacks[i] = new int[stackSize];
+            }
+        }
+    }
+
+    private static void runStripes(final Executor executor, final int stripes, final int length, final StripeAction action)
+            throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(stripes - 1);
+        final AtomicReference<RuntimeException> error = new AtomicReference<>();
+        for (int stripe = 1; stripe < stripes; stripe++) {
+            final int stripeIndex = stripe;
+            try {
+                executor.execute(() -> {
+                    try {
+                        action.run(stripeIndex, length * stripeIndex / stripes, length * (stripeIndex + 1) / stripes);
+                    } catch (final RuntimeException exception) {
+                        error.compareAndSet(null, exception);
+                    } finally {
+                        latch.countDown();
+                    }
+                });
+            } catch (final RejectedExecutionException exception) {
+                error.compareAndSet(null, exception);
+                latch.countDown();
+            }
+        }
+        try {
+            action.run(0, 0, length / stripes);
+        } finally {
+            // stripes are writing into shared buffers and stacks so they should be finished before leaving
+            // even if calling thread is interrupted or its own stripe failed
+            awaitUninterruptibly(latch);
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (final InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static int[] createDivisions(final int radius) {
+        int divisionsSum = (radius + radius + 2) >> 1;
+        divisionsSum *= divisionsSum;
+        final int[] result = new int[256 * divisionsSum];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = i / divisionsSum;
+        }
+        return result;
+    }
+
+    /**
+     * Horizontal pass of rows from fromRow (inclusive) to toRow (exclusive).
+     * Writes alpha of source and blurred RGB of every pixel into target.
+     */
+    @SuppressWarnings({"PMD.ExcessiveParameterList", "checkstyle:ParameterNumber"})
+    static void blurRows(final int[] source, final int[] target, final int width, final int radius, final int fromRow, final int toRow,
+                         final int[] nextColumns, final int[] divisions, final int[] stack) {
+        final int maxX = width - 1;
+        final int div = radius + radius + 1;
+        final int r1 = radius + 1;
+        for (int y = fromRow; y < toRow; y++) {
+            final int rowStart = y * width;
+            int redSum = 0;
+            int greenSum = 0;
+            int blueSum = 0;
+            int redInSum = 0;
+            int greenInSum = 0;
+            int blueInSum = 0;
+            int redOutSum = 0;
+            int greenOutSum = 0;
+            int blueOutSum = 0;
+            for (int i = -radius; i <= radius; i++) {
+                final int pixel = source[rowStart + Math.min(maxX, Math.max(i, 0))];
+                final int stackIndex = (i + radius) * 3;
+                final int red = (pixel & 0xff0000) >> 16;
+                final int green = (pixel & 0x00ff00) >> 8;
+                final int blue = pixel & 0x0000ff;
+                stack[stackIndex] = red;
+                stack[stackIndex + 1] = green;
+                stack[stackIndex + 2] = blue;
+                final int weight = r1 - Math.abs(i);
+                redSum += red * weight;
+                greenSum += green * weight;
+                blueSum += blue * weight;
+                if (i > 0) {
+                    redInSum += red;
+                    greenInSum += green;
+                    blueInSum += blue;
+                } else {
+                    redOutSum += red;
+                    greenOutSum += green;
+                    blueOutSum += blue;
+                }
+            }
+            int stackPointer = radius;
+            int index = rowStart;
+            for (int x = 0; x < width; x++) {
+                target[index] = (source[index] & 0xff000000) | (divisions[redSum] << 16) | (divisions[greenSum] << 8) | divisions[blueSum];
+
+                redSum -= redOutSum;
+                greenSum -= greenOutSum;
+                blueSum -= blueOutSum;
+
+                int stackIndex = ((stackPointer - radius + div) % div) * 3;
+                redOutSum -= stack[stackIndex];
+                greenOutSum -= stack[stackIndex + 1];
+                blueOutSum -= stack[stackIndex + 2];
+
+                final int pixel = source[rowStart + nextColumns[x]];
+                final int red = (pixel & 0xff0000) >> 16;
+                final int green = (pixel & 0x00ff00) >> 8;
+                final int blue = pixel & 0x0000ff;
+                stack[stackIndex] = red;
+                stack[stackIndex + 1] = green;
+                stack[stackIndex + 2] = blue;
+
+                redInSum += red;
+                greenInSum += green;
+                blueInSum += blue;
+
+                redSum += redInSum;
+                greenSum += greenInSum;
+                blueSum += blueInSum;
+
+                stackPointer = (stackPointer + 1) % div;
+                stackIndex = stackPointer * 3;
+
+                redOutSum += stack[stackIndex];
+                greenOutSum += stack[stackIndex + 1];
+                blueOutSum += stack[stackIndex + 2];
+
+                redInSum -= stack[stackIndex];
+                greenInSum -= stack[stackIndex + 1];
+                blueInSum -= stack[stackIndex + 2];
+
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Vertical pass of columns from fromColumn (inclusive) to toColumn (exclusive).
+     * Reads packed pixels of horizontal pass from source and writes their alpha and blurred RGB into target.
+     */
+    @SuppressWarnings({"PMD.ExcessiveParameterList", "checkstyle:ParameterNumber"})
+    static void blurColumns(final int[] source, final int[] target, final int width, final int height, final int radius,
+                            final int fromColumn, final int toColumn, final int[] nextRows, final int[] divisions, final int[] stack) {
+        final int maxY = height - 1;
+        final int div = radius + radius + 1;
+        final int r1 = radius + 1;
+        for (int x = fromColumn; x < toColumn; x++) {
+            int redSum = 0;
+            int greenSum = 0;
+            int blueSum = 0;
+            int redInSum = 0;
+            int greenInSum = 0;
+            int blueInSum = 0;
+            int redOutSum = 0;
+            int greenOutSum = 0;
+            int blueOutSum = 0;
+            int rowOffset = -radius * width;
+            for (int i = -radius; i <= radius; i++) {
+                final int pixel = source[Math.max(0, rowOffset) + x];
+                final int stackIndex = (i + radius) * 3;
+                final int red = (pixel >> 16) & 0xff;
+                final int green = (pixel >> 8) & 0xff;
+                final int blue = pixel & 0xff;
+                stack[stackIndex] = red;
+                stack[stackIndex + 1] = green;
+                stack[stackIndex + 2] = blue;
+                final int weight = r1 - Math.abs(i);
+                redSum += red * weight;
+                greenSum += green * weight;
+                blueSum += blue * weight;
+                if (i > 0) {
+                    redInSum += red;
+                    greenInSum += green;
+                    blueInSum += blue;
+                } else {
+                    redOutSum += red;
+                    greenOutSum += green;
+                    blueOutSum += blue;
+                }
+                if (i < maxY) {
+                    rowOffset += width;
+                }
+            }
+            int stackPointer = radius;
+            int index = x;
+            for (int y = 0; y < height; y++) {
+                target[index] = (source[index] & 0xff000000) | (divisions[redSum] << 16) | (divisions[greenSum] << 8) | divisions[blueSum];
+
+                redSum -= redOutSum;
+                greenSum -= greenOutSum;
+                blueSum -= blueOutSum;
+
+                int stackIndex = ((stackPointer - radius + div) % div) * 3;
+                redOutSum -= stack[stackIndex];
+                greenOutSum -= stack[stackIndex + 1];
+                blueOutSum -= stack[stackIndex + 2];
+
+                final int pixel = source[x + nextRows[y]];
+                final int red = (pixel >> 16) & 0xff;
+                final int green = (pixel >> 8) & 0xff;
+                final int blue = pixel & 0xff;
+                stack[stackIndex] = red;
+                stack[stackIndex + 1] = green;
+                stack[stackIndex + 2] = blue;
+
+                redInSum += red;
+                greenInSum += green;
+                blueInSum += blue;
+
+                redSum += redInSum;
+                greenSum += greenInSum;
+                blueSum += blueInSum;
+
+                stackPointer = (stackPointer + 1) % div;
+                stackIndex = stackPointer * 3;
+
+                redOutSum += stack[stackIndex];
+                greenOutSum += stack[stackIndex + 1];
+                blueOutSum += stack[stackIndex + 2];
+
+                redInSum -= stack[stackIndex];
+                greenInSum -= stack[stackIndex + 1];
+                blueInSum -= stack[stackIndex + 2];
+
+                index += width;
+            }
+        }
+    }
+
+    /**
+     * Access to pixels of source and target of {@link #blurRegion(RegionPixels, int, int, int, int, int, int, int)}.
+     */
+    interface RegionPixels {
+
+        /**
+         * Reads rectangle of source into region buffer row by row.
+         */
+        void readSource(int[] region, int regionLeft, int regionTop, int regionWidth, int regionHeight);
+
+        /**
+         * Writes rectangle of blurred region buffer which starts at offset with specific stride into target.
+         */
+        @SuppressWarnings({"PMD.ExcessiveParameterList", "checkstyle:ParameterNumber"})
+        void writeTarget(int[] region, int offset, int stride, int updatedLeft, int updatedTop, int updatedWidth, int updatedHeight);
+
+    }
+
+    private interface StripeAction {
+
+        void run(int stripe, int from, int to);
+
+    }
+
+}
@@ -0,0 +1,481 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.views;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import ru.touchin.roboswag.components.R;
+import ru.touchin.roboswag.components.utils.images.AdaptiveBlur;
+import ru.touchin.roboswag.components.utils.images.BlurUtils;
+import ru.touchin.roboswag.core.log.Lc;
+import rx.Observable;
+import rx.Scheduler;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * View which shows blurred content of window behind it (e.g. for frosted toolbar or bottom sheet background).
+ * Before drawing of window content behind view is drawn (clipped by bounds of view) into bitmap of reduced size on main thread
+ * and then it is blurred on background thread by {@link BlurUtils#getAdaptiveBlur(Context)} so fastest backend of device is used
+ * and main thread is not waiting for blur or for calibration of backends. Blurred bitmap is shown when it is ready, till then previous one is shown.
+ * Frames are captured not more often than maximum FPS and not while previous frame is blurring: such frame is captured after blur ends.
+ * Blur is skipped if captured content has not changed (it is checked on background thread too)
+ * and capturing of frames is slowing down while content is not changing (e.g. if some other part of window is animating).
+ * Cost of each blurred frame could be listened by {@link OnFrameBlurredListener}.
+ * See BlurView Attributes:
+ * R.styleable#BlurView_blurRadius
+ * R.styleable#BlurView_blurScale
+ * R.styleable#BlurView_blurMaxFps
+ * R.styleable#BlurView_blurOverlayColor
+ */
+public class BlurView extends View {
+
+    private static final float DEFAULT_RADIUS_DP = 16;
+    private static final float DEFAULT_SCALE = 0.25f;
+    private static final int DEFAULT_MAX_FPS = 30;
+    private static final long IDLE_FRAME_INTERVAL_STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+    private static final long MAX_IDLE_FRAME_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int MAX_IDLE_FRAME_INTERVAL_SHIFT = 5;
+
+    @NonNull
+    private static final Scheduler BLUR_SCHEDULER = Schedulers.from(Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "BlurView");
+        thread.setDaemon(true);
+        return thread;
+    }));
+
+    @NonNull
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    @NonNull
+    private final ViewTreeObserver.OnPreDrawListener preDrawListener = () -> {
+        updateBlurredBitmap();
+        return true;
+    };
+    @NonNull
+    private final Runnable delayedFrameAction = () -> {
+        delayedFramePosted = false;
+        invalidate();
+    };
+    @NonNull
+    private final int[] location = new int[2];
+    @NonNull
+    private final int[] rootLocation = new int[2];
+    private int radius;
+    private float scale;
+    private long minFrameIntervalNanos;
+    @ColorInt
+    private int overlayColor;
+    @Nullable
+    private OnFrameBlurredListener onFrameBlurredListener;
+
+    @Nullable
+    private Bitmap captureBitmap;
+    @Nullable
+    private Bitmap blurredBitmap;
+    // bitmap which is blurring on background thread, it is owned by background thread until blur ends
+    @Nullable
+    private Bitmap blurringBitmap;
+    // buffer to calculate checksum of captured content, it is used only on background thread
+    @Nullable
+    private int[] pixels;
+    private int lastChecksum;
+    private int unchangedFramesCount;
+    private int bitmapsGeneration;
+    private boolean isCapturing;
+    private boolean delayedFramePosted;
+    // window has been changed while previous frame was blurring so it should be captured after blur ends
+    private boolean framePending;
+    private long lastFrameTime;
+    private long framesCount;
+    private long skippedFramesCount;
+    private long lastFrameNanos;
+    private long totalFramesNanos;
+
+    public BlurView(@NonNull final Context context) {
+        this(context, null);
+    }
+
+    public BlurView(@NonNull final Context context, @Nullable final AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public BlurView(@NonNull final Context context, @Nullable final AttributeSet attrs, final int defStyle) {
+        super(context, attrs, defStyle);
+
+        final int defaultRadius = Math.round(DEFAULT_RADIUS_DP * context.getResources().getDisplayMetrics().density);
+        if (attrs == null) {
+            radius = defaultRadius;
+            scale = DEFAULT_SCALE;
+            setMaxFps(DEFAULT_MAX_FPS);
+            overlayColor = Color.TRANSPARENT;
+        } else {
+            final TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.BlurView, defStyle, 0);
+            radius = typedArray.getDimensionPixelSize(R.styleable.BlurView_blurRadius, defaultRadius);
+            scale = typedArray.getFloat(R.styleable.BlurView_blurScale, DEFAULT_SCALE);
+            setMaxFps(typedArray.getInt(R.styleable.BlurView_blurMaxFps, DEFAULT_MAX_FPS));
+            overlayColor = typedArray.getColor(R.styleable.BlurView_blurOverlayColor, Color.TRANSPARENT);
+            typedArray.recycle();
+        }
+    }
+
+    /**
+     * Returns radius of blur in pixels of view.
+     *
+     * @return Radius of blur.
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Sets radius of blur in pixels of view.
+     *
+     * @param radius Radius of blur.
+     */
+    public void setRadius(final int radius) {
+        this.radius = radius;
+        lastChecksum = 0;
+        unchangedFramesCount = 0;
+        invalidate();
+    }
+
+    /**
+     * Returns scale of captured content relative to size of view.
+     *
+     * @return Scale from 0 to 1.
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * Sets scale of captured content relative to size of view. Smaller scale is faster but blurred content is less detailed.
+     *
+     * @param scale Scale from 0 to 1.
+     */
+    public void setScale(final float scale) {
+        this.scale = scale;
+        invalidate();
+    }
+
+    /**
+     * Sets maximum frames per second of blur. Content changes which are happening more often are shown with delay.
+     *
+     * @param maxFps Maximum FPS. If it is 0 or less then frames are not limited.
+     */
+    public final void setMaxFps(final int maxFps) {
+        minFrameIntervalNanos = maxFps > 0 ? TimeUnit.SECONDS.toNanos(1) / maxFps : 0;
+    }
+
+    /**
+     * Sets color which is drawn over blurred content.
+     *
+     * @param overlayColor Color of overlay.
+     */
+    public void setOverlayColor(@ColorInt final int overlayColor) {
+        this.overlayColor = overlayColor;
+        invalidate();
+    }
+
+    /**
+     * Sets listener of blurred frames cost.
+     *
+     * @param onFrameBlurredListener Listener or null.
+     */
+    public void setOnFrameBlurredListener(@Nullable final OnFrameBlurredListener onFrameBlurredListener) {
+        this.onFrameBlurredListener = onFrameBlurredListener;
+    }
+
+    /**
+     * Returns count of blurred frames.
+     *
+     * @return Count of frames.
+     */
+    public long getFramesCount() {
+        return framesCount;
+    }
+
+    /**
+     * Returns count of captured frames which were not blurred as content has not changed.
+     *
+     * @return Count of skipped frames.
+     */
+    public long getSkippedFramesCount() {
+        return skippedFramesCount;
+    }
+
+    /**
+     * Returns time of capturing (on main thread) and blurring (on background thread) of last blurred frame.
+     *
+     * @return Time in nanoseconds.
+     */
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    /**
+     * Returns average time of capturing (on main thread) and blurring (on background thread) of frame.
+     *
+     * @return Time in nanoseconds.
+     */
+    public long getAverageFrameNanos() {
+        return framesCount > 0 ? totalFramesNanos / framesCount : 0;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnPreDrawListener(preDrawListener);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        getViewTreeObserver().removeOnPreDrawListener(preDrawListener);
+        removeCallbacks(delayedFrameAction);
+        delayedFramePosted = false;
+        releaseBitmaps();
+        super.onDetachedFromWindow();
+    }
+
+    private void updateBlurredBitmap() {
+        if (isCapturing || getWidth() == 0 || getHeight() == 0 || getVisibility() != VISIBLE) {
+            return;
+        }
+        if (blurringBitmap != null) {
+            framePending = true;
+            return;
+        }
+        final long startTime = System.nanoTime();
+        final long frameIntervalNanos = getFrameIntervalNanos();
+        if (startTime - lastFrameTime < frameIntervalNanos) {
+            if (!delayedFramePosted) {
+                delayedFramePosted = true;
+                postDelayed(delayedFrameAction, TimeUnit.NANOSECONDS.toMillis(frameIntervalNanos - (startTime - lastFrameTime)) + 1);
+            }
+            return;
+        }
+        lastFrameTime = startTime;
+
+        final int bitmapWidth = Math.max(1, Math.round(getWidth() * scale));
+        final int bitmapHeight = Math.max(1, Math.round(getHeight() * scale));
+        if (pixels == null || pixels.length != bitmapWidth * bitmapHeight
+                || (blurredBitmap != null && (blurredBitmap.getWidth() != bitmapWidth || blurredBitmap.getHeight() != bitmapHeight))) {
+            releaseBitmaps();
+            pixels = new int[bitmapWidth * bitmapHeight];
+        }
+        if (captureBitmap == null || captureBitmap.getWidth() != bitmapWidth || captureBitmap.getHeight() != bitmapHeight) {
+            if (captureBitmap != null) {
+                BlurUtils.getBitmapPool().release(captureBitmap);
+            }
+            captureBitmap = BlurUtils.getBitmapPool().obtain(bitmapWidth, bitmapHeight, Bitmap.Config.ARGB_8888);
+        }
+        capture(captureBitmap);
+
+        final long captureNanos = System.nanoTime() - startTime;
+        final Bitmap bitmap = captureBitmap;
+        final int[] checksumPixels = pixels;
+        final boolean skipUnchanged = blurredBitmap != null;
+        final int previousChecksum = lastChecksum;
+        final int generation = bitmapsGeneration;
+        final int blurRadius = Math.max(1, Math.round(radius * scale));
+        final AdaptiveBlur adaptiveBlur = BlurUtils.getAdaptiveBlur(getContext());
+        blurringBitmap = bitmap;
+        captureBitmap = null;
+        Observable
+                .fromCallable(() -> {
+                    final long blurStartTime = System.nanoTime();
+                    final int checksum = getChecksum(bitmap, checksumPixels);
+                    if (skipUnchanged && checksum == previousChecksum) {
+                        return new FrameResult(checksum, true, 0L);
+                    }
+                    adaptiveBlur.blur(bitmap, blurRadius);
+                    return new FrameResult(checksum, false, System.nanoTime() - blurStartTime);
+                })
+                .subscribeOn(BLUR_SCHEDULER)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(result -> onFrameBlurred(bitmap, generation, captureNanos, result),
+                        throwable -> {
+                            Lc.assertion(throwable);
+                            onFrameBlurred(bitmap, -1, captureNanos, null);
+                        });
+    }
+
+    private long getFrameIntervalNanos() {
+        if (unchangedFramesCount == 0) {
+            return minFrameIntervalNanos;
+        }
+        // content is not changing so capturing is slowing down
+        final long idleFrameIntervalNanos = IDLE_FRAME_INTERVAL_STEP_NANOS << Math.min(unchangedFramesCount, MAX_IDLE_FRAME_INTERVAL_SHIFT);
+        return Math.max(minFrameIntervalNanos, Math.min(MAX_IDLE_FRAME_INTERVAL_NANOS, idleFrameIntervalNanos));
+    }
+
+    private void onFrameBlurred(@NonNull final Bitmap bitmap, final int generation, final long captureNanos,
+                                @Nullable final FrameResult result) {
+        blurringBitmap = null;
+        boolean shouldInvalidate = framePending;
+        framePending = false;
+        if (result == null || generation != bitmapsGeneration) {
+            // view was detached or resized while blurring or blur failed
+            BlurUtils.getBitmapPool().release(bitmap);
+        } else if (result.skipped) {
+            // content has not changed so captured bitmap is used for next capture
+            skippedFramesCount++;
+            unchangedFramesCount++;
+            if (captureBitmap == null) {
+                captureBitmap = bitmap;
+            } else {
+                BlurUtils.getBitmapPool().release(bitmap);
+            }
+        } else {
+            // swapping bitmaps so blurred one is shown and previous one is used for next capture
+            if (captureBitmap != null) {
+                BlurUtils.getBitmapPool().release(captureBitmap);
+            }
+            captureBitmap = blurredBitmap;
+            blurredBitmap = bitmap;
+            lastChecksum = result.checksum;
+            unchangedFramesCount = 0;
+            lastFrameNanos = captureNanos + result.blurNanos;
+            totalFramesNanos += lastFrameNanos;
+            framesCount++;
+            if (onFrameBlurredListener != null) {
+                onFrameBlurredListener.onFrameBlurred(captureNanos, result.blurNanos, bitmap.getWidth(), bitmap.getHeight());
+            }
+            shouldInvalidate = true;
+        }
+        // showing new blurred bitmap or capturing frame which was skipped while blurring
+        if (shouldInvalidate) {
+            invalidate();
+        }
+    }
+
+    private void capture(@NonNull final Bitmap bitmap) {
+        final View rootView = getRootView();
+        getLocationInWindow(location);
+        rootView.getLocationInWindow(rootLocation);
+        bitmap.eraseColor(Color.TRANSPARENT);
+        final Canvas canvas = new Canvas(bitmap);
+        canvas.scale((float) bitmap.getWidth() / getWidth(), (float) bitmap.getHeight() / getHeight());
+        // views outside of bounds are rejected by clip and not drawn
+        canvas.clipRect(0, 0, getWidth(), getHeight());
+        canvas.translate(rootLocation[0] - location[0], rootLocation[1] - location[1]);
+        isCapturing = true;
+        try {
+            rootView.draw(canvas);
+        } finally {
+            isCapturing = false;
+        }
+    }
+
+    private static int getChecksum(@NonNull final Bitmap bitmap, @NonNull final int[] pixels) {
+        bitmap.getPixels(pixels, 0, bitmap.getWidth(), 0, 0, bitmap.getWidth(), bitmap.getHeight());
+        int checksum = 1;
+        for (final int pixel : pixels) {
+            checksum = 31 * checksum + pixel;
+        }
+        return checksum;
+    }
+
+    private void releaseBitmaps() {
+        // bitmap which is blurring now will be released after blur
+        bitmapsGeneration++;
+        if (captureBitmap != null) {
+            BlurUtils.getBitmapPool().release(captureBitmap);
+            captureBitmap = null;
+        }
+        if (blurredBitmap != null) {
+            BlurUtils.getBitmapPool().release(blurredBitmap);
+            blurredBitmap = null;
+        }
+        pixels = null;
+        lastChecksum = 0;
+        unchangedFramesCount = 0;
+    }
+
+    @Override
+    public void draw(@NonNull final Canvas canvas) {
+        // view is not drawing itself into captured content
+        if (isCapturing) {
+            return;
+        }
+        super.draw(canvas);
+    }
+
+    @Override
+    protected void onDraw(@NonNull final Canvas canvas) {
+        super.onDraw(canvas);
+        if (blurredBitmap != null) {
+            canvas.save();
+            canvas.scale((float) getWidth() / blurredBitmap.getWidth(), (float) getHeight() / blurredBitmap.getHeight());
+            canvas.drawBitmap(blurredBitmap, 0, 0, bitmapPaint);
+            canvas.restore();
+        }
+        if (overlayColor != Color.TRANSPARENT) {
+            canvas.drawColor(overlayColor);
+        }
+    }
+
+    /**
+     * Listener of blurred frames.
+     */
+    public interface OnFrameBlurredListener {
+
+        /**
+         * Calls on main thread after frame has been captured and blurred.
+         *
+         * @param captureNanos Time of capturing of frame on main thread in nanoseconds;
+         * @param blurNanos    Time of blurring of frame on background thread in nanoseconds;
+         * @param width        Width of blurred bitmap;
+         * @param height       Height of blurred bitmap.
+         */
+        void onFrameBlurred(long captureNanos, long blurNanos, int width, int height);
+
+    }
+
+    private static final class FrameResult {
+
+        private final int checksum;
+        private final boolean skipped;
+        private final long blurNanos;
+
+        private FrameResult(final int checksum, final boolean skipped, final long blurNanos) {
+            this.checksum = checksum;
+            this.skipped = skipped;
+            this.blurNanos = blurNanos;
+        }
+
+    }
+
+}
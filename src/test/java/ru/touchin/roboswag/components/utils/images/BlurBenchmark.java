@@ -0,0 +1,371 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.utils.images;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Throughput benchmark of blur kernels on plain pixels without Android so it could be run on device or on JVM (see {@link #main(String[])}).
+ * Every case compares kernel with baseline kernel (e.g. optimized {@link StackBlur} with {@link StackBlurReference})
+ * on same pseudo-random image and checks that outputs are bit-exact.
+ */
+public final class BlurBenchmark {
+
+    private static final int[][] DEFAULT_SIZES = {{360, 640}, {720, 1280}, {1080, 1920}};
+    private static final int[] DEFAULT_RADII = {4, 16, 25};
+    private static final int[] DEFAULT_LARGE_RADII = {25, 50, 100};
+    private static final int DEFAULT_ITERATIONS = 5;
+    private static final float DEFAULT_DIRTY_FRACTION = 0.1f;
+    private static final long RANDOM_SEED = 42;
+    private static final float NANOS_IN_MILLI = 1_000_000f;
+
+    /**
+     * Runs benchmark with default sizes (360p, 720p, 1080p) and radii (4, 16, 25 and 25, 50, 100 for {@link ScaledBlur}) and prints results.
+     * Exact kernels which are not bit-exact with baseline are failing benchmark. Golden outputs of kernels are checked by {@link BlurKernelsTest}.
+     *
+     * @param args Not used.
+     * @throws InterruptedException If benchmark was interrupted.
+     */
+    public static void main(final String[] args) throws InterruptedException {
+        printResults(run(DEFAULT_SIZES, DEFAULT_RADII, DEFAULT_ITERATIONS), true);
+        final List<Integer> threadCounts = new ArrayList<>();
+        for (int threadCount = 2; threadCount <= Runtime.getRuntime().availableProcessors(); threadCount *= 2) {
+            threadCounts.add(threadCount);
+        }
+        printResults(runParallel(DEFAULT_SIZES, DEFAULT_RADII, threadCounts, DEFAULT_ITERATIONS), true);
+        printResults(runScaled(DEFAULT_SIZES, DEFAULT_LARGE_RADII, DEFAULT_ITERATIONS), false);
+        printResults(runRegion(DEFAULT_SIZES, DEFAULT_RADII, DEFAULT_DIRTY_FRACTION, DEFAULT_ITERATIONS), true);
+    }
+
+    private static void printResults(final List<Result> results, final boolean bitExactRequired) {
+        for (final Result result : results) {
+            System.out.println(result);
+            if (bitExactRequired && !result.isBitExact()) {
+                throw new IllegalStateException("Kernel is not bit-exact with baseline: " + result);
+            }
+        }
+    }
+
+    /**
+     * Runs benchmark of serial {@link StackBlur} against {@link StackBlurReference} for every combination of sizes and radii.
+     *
+     * @param sizes      Pairs of width and height of images;
+     * @param radii      Radii of blur;
+     * @param iterations Count of measured iterations of every case. One more iteration is made to warm up;
+     * @return Results of cases.
+     * @throws InterruptedException If benchmark was interrupted.
+     */
+    public static List<Result> run(final int[][] sizes, final int[] radii, final int iterations) throws InterruptedException {
+        final List<Result> results = new ArrayList<>();
+        final StackBlur stackBlur = new StackBlur(Integer.MAX_VALUE);
+        for (final int[] size : sizes) {
+            for (final int radius : radii) {
+                results.add(measure("serial", size[0], size[1], radius, iterations, StackBlurReference::blur, stackBlur::blur));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs benchmark of parallel {@link StackBlur} against serial {@link StackBlur} for every combination of sizes, radii and counts of threads.
+     *
+     * @param sizes        Pairs of width and height of images;
+     * @param radii        Radii of blur;
+     * @param threadCounts Counts of threads (and stripes) to blur with;
+     * @param iterations   Count of measured iterations of every case. One more iteration is made to warm up;
+     * @return Results of cases.
+     * @throws InterruptedException If benchmark was interrupted.
+     */
+    public static List<Result> runParallel(final int[][] sizes, final int[] radii, final List<Integer> threadCounts, final int iterations)
+            throws InterruptedException {
+        final List<Result> results = new ArrayList<>();
+        final StackBlur serialBlur = new StackBlur(Integer.MAX_VALUE);
+        final StackBlur parallelBlur = new StackBlur(Integer.MAX_VALUE);
+        for (final int threadCount : threadCounts) {
+            final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threadCount - 1));
+            try {
+                for (final int[] size : sizes) {
+                    for (final int radius : radii) {
+                        results.add(measure("parallel x" + threadCount, size[0], size[1], radius, iterations, serialBlur::blur,
+                                (pixels, width, height, blurRadius) -> parallelBlur.blur(pixels, width, height, blurRadius, executor, threadCount)));
+                    }
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs benchmark of {@link ScaledBlur} against full resolution {@link StackBlur} for every combination of sizes and radii.
+     * Results are not bit-exact so quality is measured by mean error of channels.
+     *
+     * @param sizes      Pairs of width and height of images;
+     * @param radii      Radii of blur;
+     * @param iterations Count of measured iterations of every case. One more iteration is made to warm up;
+     * @return Results of cases.
+     * @throws InterruptedException If benchmark was interrupted.
+     */
+    public static List<Result> runScaled(final int[][] sizes, final int[] radii, final int iterations) throws InterruptedException {
+        final List<Result> results = new ArrayList<>();
+        final StackBlur stackBlur = new StackBlur(Integer.MAX_VALUE);
+        final ScaledBlur scaledBlur = new ScaledBlur(new StackBlur(Integer.MAX_VALUE));
+        for (final int[] size : sizes) {
+            for (final int radius : radii) {
+                results.add(measure("scaled x" + ScaledBlur.getFactor(radius), size[0], size[1], radius, iterations,
+                        stackBlur::blur, scaledBlur::blur));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs benchmark of {@link StackBlur#blurRegion} against {@link StackBlur#blur} of whole image for every combination of sizes and radii.
+     * Band of rows in the middle of image is changed and previous blurred image is updated by region blur.
+     *
+     * @param sizes         Pairs of width and height of images;
+     * @param radii         Radii of blur;
+     * @param dirtyFraction Part of rows which are changed from 0 to 1;
+     * @param iterations    Count of measured iterations of every case. One more iteration is made to warm up;
+     * @return Results of cases.
+     * @throws InterruptedException If benchmark was interrupted.
+     */
+    public static List<Result> runRegion(final int[][] sizes, final int[] radii, final float dirtyFraction, final int iterations)
+            throws InterruptedException {
+        final List<Result> results = new ArrayList<>();
+        final StackBlur stackBlur = new StackBlur(Integer.MAX_VALUE);
+        for (final int[] size : sizes) {
+            final int width = size[0];
+            final int height = size[1];
+            final int dirtyTop = height / 2;
+            final int dirtyBottom = Math.min(height, dirtyTop + Math.max(1, (int) (height * dirtyFraction)));
+            final int[] source = createImage(width, height);
+            final int[] changedSource = source.clone();
+            for (int i = dirtyTop * width; i < dirtyBottom * width; i++) {
+                changedSource[i] ^= 0x00ffffff;
+            }
+            for (final int radius : radii) {
+                final int[] previousBlurred = source.clone();
+                stackBlur.blur(previousBlurred, width, height, radius);
+                results.add(measure("region " + (int) (dirtyFraction * 100) + '%', width, height, radius, iterations,
+                        stackBlur::blur, changedSource,
+                        (pixels, blurWidth, blurHeight, blurRadius) ->
+                                stackBlur.blurRegion(changedSource, pixels, blurWidth, blurHeight, blurRadius, 0, dirtyTop, blurWidth, dirtyBottom),
+                        previousBlurred));
+            }
+        }
+        return results;
+    }
+
+    private static Result measure(final String name, final int width, final int height, final int radius, final int iterations,
+                                  final Kernel baseline, final Kernel kernel) throws InterruptedException {
+        final int[] source = createImage(width, height);
+        return measure(name, width, height, radius, iterations, baseline, source, kernel, source);
+    }
+
+    @SuppressWarnings({"PMD.ExcessiveParameterList", "checkstyle:ParameterNumber"})
+    private static Result measure(final String name, final int width, final int height, final int radius, final int iterations,
+                                  final Kernel baseline, final int[] baselineSource, final Kernel kernel, final int[] kernelSource)
+            throws InterruptedException {
+        final int[] expected = new int[baselineSource.length];
+        final int[] actual = new int[kernelSource.length];
+        long baselineNanos = 0;
+        long kernelNanos = 0;
+        for (int i = 0; i <= iterations; i++) {
+            System.arraycopy(baselineSource, 0, expected, 0, expected.length);
+            final long baselineStart = System.nanoTime();
+            baseline.blur(expected, width, height, radius);
+            final long baselineTime = System.nanoTime() - baselineStart;
+
+            System.arraycopy(kernelSource, 0, actual, 0, actual.length);
+            final long kernelStart = System.nanoTime();
+            kernel.blur(actual, width, height, radius);
+            final long kernelTime = System.nanoTime() - kernelStart;
+            if (i > 0) {
+                baselineNanos += baselineTime;
+                kernelNanos += kernelTime;
+            }
+        }
+        return new Result(name, width, height, radius, baselineNanos / iterations, kernelNanos / iterations,
+                Arrays.equals(expected, actual), getMeanError(expected, actual));
+    }
+
+    private static float getMeanError(final int[] expected, final int[] actual) {
+        long errorSum = 0;
+        for (int i = 0; i < expected.length; i++) {
+            for (int shift = 0; shift <= 24; shift += 8) {
+                errorSum += Math.abs(((expected[i] >> shift) & 0xff) - ((actual[i] >> shift) & 0xff));
+            }
+        }
+        return expected.length > 0 ? (float) errorSum / (expected.length * 4) : 0;
+    }
+
+    /**
+     * Creates pseudo-random image with smooth gradients and noise which is same for same size.
+     *
+     * @param width  Width of image;
+     * @param height Height of image;
+     * @return Pixels of image in ARGB format.
+     */
+    public static int[] createImage(final int width, final int height) {
+        final Random random = new Random(RANDOM_SEED);
+        final int[] result = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int alpha = 0x80 + random.nextInt(0x80);
+                final int red = (x * 255 / width + random.nextInt(32)) & 0xff;
+                final int green = (y * 255 / height + random.nextInt(32)) & 0xff;
+                final int blue = random.nextInt(256);
+                result[y * width + x] = (alpha << 24) | (red << 16) | (green << 8) | blue;
+            }
+        }
+        return result;
+    }
+
+    private BlurBenchmark() {
+    }
+
+    /**
+     * Blur kernel which is blurring pixels in place.
+     */
+    public interface Kernel {
+
+        /**
+         * Blurs pixels in place.
+         *
+         * @param pixels Pixels in ARGB format row by row;
+         * @param width  Width of image;
+         * @param height Height of image;
+         * @param radius Radius of blur.
+         * @throws InterruptedException If blur was interrupted.
+         */
+        void blur(int[] pixels, int width, int height, int radius) throws InterruptedException;
+
+    }
+
+    /**
+     * Result of benchmark case.
+     */
+    public static class Result {
+
+        private final String name;
+        private final int width;
+        private final int height;
+        private final int radius;
+        private final long baselineNanos;
+        private final long kernelNanos;
+        private final boolean bitExact;
+        private final float meanError;
+
+        public Result(final String name, final int width, final int height, final int radius, final long baselineNanos, final long kernelNanos,
+                      final boolean bitExact, final float meanError) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.radius = radius;
+            this.baselineNanos = baselineNanos;
+            this.kernelNanos = kernelNanos;
+            this.bitExact = bitExact;
+            this.meanError = meanError;
+        }
+
+        /**
+         * Returns name of measured kernel.
+         *
+         * @return Name of kernel.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getRadius() {
+            return radius;
+        }
+
+        /**
+         * Returns average time of baseline kernel in nanoseconds.
+         *
+         * @return Time of baseline kernel.
+         */
+        public long getBaselineNanos() {
+            return baselineNanos;
+        }
+
+        /**
+         * Returns average time of measured kernel in nanoseconds.
+         *
+         * @return Time of measured kernel.
+         */
+        public long getKernelNanos() {
+            return kernelNanos;
+        }
+
+        /**
+         * Returns baseline time divided by measured kernel time.
+         *
+         * @return Speedup of measured kernel.
+         */
+        public float getSpeedup() {
+            return kernelNanos > 0 ? (float) baselineNanos / kernelNanos : 0;
+        }
+
+        /**
+         * Returns if output of measured kernel is same as output of baseline kernel.
+         *
+         * @return True if outputs are same.
+         */
+        public boolean isBitExact() {
+            return bitExact;
+        }
+
+        /**
+         * Returns mean absolute difference of channels (from 0 to 255) between outputs of measured kernel and baseline kernel.
+         *
+         * @return Mean error.
+         */
+        public float getMeanError() {
+            return meanError;
+        }
+
+        @Override
+        public String toString() {
+            return name + ' ' + width + "x" + height + " radius=" + radius + ": baseline=" + baselineNanos / NANOS_IN_MILLI + "ms kernel="
+                    + kernelNanos / NANOS_IN_MILLI + "ms speedup=" + getSpeedup() + " bitExact=" + bitExact
+                    + (bitExact ? "" : " meanError=" + meanError);
+        }
+
+    }
+
+}
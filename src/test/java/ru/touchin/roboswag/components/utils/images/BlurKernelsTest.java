@@ -0,0 +1,210 @@
+/*
+ *  Copyright (c) 2015 RoboSwag (Gavriil Sitnikov, Vsevolod Ivanov)
+ *
+ *  This file is part of RoboSwag library.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package ru.touchin.roboswag.components.utils.images;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created by Gavriil Sitnikov on 19/10/2026.
+ * Correctness tests of blur kernels on plain pixels without Android.
+ * Outputs of kernels on pseudo-random images of {@link BlurBenchmark#createImage(int, int)} are compared with golden checksums
+ * which were taken from {@link StackBlurReference}. {@link StackBlur} (single thread, parallel and region blur) should be bit-exact with them.
+ * {@link ScaledBlur} is approximate so it is compared with its own golden checksums to notice any change of it's output.
+ * Golden checksums should not be changed by optimizations. If output of kernel is changed intentionally then
+ * new checksums are printed in messages of failed assertions.
+ */
+public class BlurKernelsTest {
+
+    private static final int[][] SIZES = {{1, 1}, {2, 3}, {17, 5}, {64, 48}, {101, 67}, {360, 640}};
+    private static final int[] RADII = {1, 2, 5, 25, 60};
+    private static final long[][] GOLDEN_CHECKSUMS = {
+            {0x71a888a153e14434L, 0x71a888a153e14434L, 0x71a888a153e14434L, 0x71a888a153e14434L, 0x71a888a153e14434L},
+            {0x74f8eae935d58101L, 0x8d10eca4fb689797L, 0xf9df86e361c0cedbL, 0xde8ab077dddbc2b8L, 0x3ca9dd5cfd7a1b65L},
+            {0x1c076fcda272caf4L, 0xc5736036ec6d0916L, 0x8c80739c9dba4431L, 0xe5d92c27ca892be7L, 0x622f798bbf833155L},
+            {0x1adee30e08249a22L, 0x6aa3b3121043c303L, 0x9b5b1bc4a7ac266aL, 0xb48bc0b57304b8cL, 0x60e4cbb14d294ddaL},
+            {0x5ec5d028c31e5e6fL, 0xd4cb0dfd62ce0266L, 0x489f8999e1eaa11eL, 0x25dfd1fa30c3b728L, 0xec900d05992c13bbL},
+            {0xad85fb0e77681a79L, 0x21a0025d0519d52aL, 0xd6266000ee2f2e0dL, 0xeb7e2406bdc590ecL, 0x9c6a68300d767457L}};
+    private static final int[][] SCALED_SIZES = {{64, 48}, {101, 67}, {360, 640}};
+    private static final int[] SCALED_RADII = {25, 50, 100};
+    private static final long[][] SCALED_GOLDEN_CHECKSUMS = {
+            {0xabc7d2b55bb687a3L, 0xba6bb28370550a90L, 0x4a1b2f7aca75060bL},
+            {0x9e359a08446e926dL, 0x3bdf1b633b2c61afL, 0x5ee57c7e72175498L},
+            {0xccedf89c1a49554dL, 0x9d8a29362842cf84L, 0x61cdd530e246e705L}};
+    private static final int PARALLEL_STRIPES = 3;
+    private static final int REGION_CHECKS_COUNT = 20;
+    private static final int INTERRUPTED_BLURS_COUNT = 50;
+    private static final long RANDOM_SEED = 42;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long getChecksum(final int[] pixels) {
+        // 64-bit FNV-1a
+        long checksum = FNV_OFFSET_BASIS;
+        for (final int pixel : pixels) {
+            for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+                checksum = (checksum ^ ((pixel >>> shift) & 0xff)) * FNV_PRIME;
+            }
+        }
+        return checksum;
+    }
+
+    @SuppressWarnings({"PMD.ExcessiveParameterList", "checkstyle:ParameterNumber"})
+    private static void assertChecksum(final String name, final int width, final int height, final int radius,
+                                       final long golden, final int[] pixels) {
+        final long checksum = getChecksum(pixels);
+        assertEquals(String.format("%s %dx%d radius %d: checksum is 0x%xL", name, width, height, radius, checksum), golden, checksum);
+    }
+
+    private static void forEachGoldenCase(final GoldenCase goldenCase) throws InterruptedException {
+        for (int sizeIndex = 0; sizeIndex < SIZES.length; sizeIndex++) {
+            final int width = SIZES[sizeIndex][0];
+            final int height = SIZES[sizeIndex][1];
+            final int[] source = BlurBenchmark.createImage(width, height);
+            for (int radiusIndex = 0; radiusIndex < RADII.length; radiusIndex++) {
+                goldenCase.check(source, width, height, RADII[radiusIndex], GOLDEN_CHECKSUMS[sizeIndex][radiusIndex]);
+            }
+        }
+    }
+
+    private final StackBlur stackBlur = new StackBlur();
+    private final ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_STRIPES - 1);
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void referenceMatchesGolden() throws InterruptedException {
+        forEachGoldenCase((source, width, height, radius, golden) -> {
+            final int[] pixels = source.clone();
+            StackBlurReference.blur(pixels, width, height, radius);
+            assertChecksum("reference", width, height, radius, golden, pixels);
+        });
+    }
+
+    @Test
+    public void stackBlurMatchesGolden() throws InterruptedException {
+        forEachGoldenCase((source, width, height, radius, golden) -> {
+            final int[] pixels = source.clone();
+            stackBlur.blur(pixels, width, height, radius);
+            assertChecksum("stack blur", width, height, radius, golden, pixels);
+        });
+    }
+
+    @Test
+    public void parallelStackBlurMatchesGolden() throws InterruptedException {
+        forEachGoldenCase((source, width, height, radius, golden) -> {
+            final int[] pixels = source.clone();
+            stackBlur.blur(pixels, width, height, radius, executor, PARALLEL_STRIPES);
+            assertChecksum("parallel stack blur", width, height, radius, golden, pixels);
+        });
+    }
+
+    @Test
+    public void fullRegionBlurMatchesGolden() throws InterruptedException {
+        forEachGoldenCase((source, width, height, radius, golden) -> {
+            final int[] pixels = new int[source.length];
+            stackBlur.blurRegion(source, pixels, width, height, radius, 0, 0, width, height);
+            assertChecksum("full region blur", width, height, radius, golden, pixels);
+        });
+    }
+
+    // region blur of changed image over blurred previous image should be bit-exact with full blur of changed image
+    @Test
+    public void regionBlurMatchesFullBlur() throws InterruptedException {
+        forEachGoldenCase((source, width, height, radius, golden) -> {
+            final int[] blurred = source.clone();
+            StackBlurReference.blur(blurred, width, height, radius);
+            final Random random = new Random(RANDOM_SEED);
+            for (int i = 0; i < REGION_CHECKS_COUNT; i++) {
+                final int left = random.nextInt(width);
+                final int top = random.nextInt(height);
+                final int right = left + 1 + random.nextInt(width - left);
+                final int bottom = top + 1 + random.nextInt(height - top);
+                final int[] changedSource = source.clone();
+                for (int y = top; y < bottom; y++) {
+                    for (int x = left; x < right; x++) {
+                        changedSource[y * width + x] ^= 0x00ffffff;
+                    }
+                }
+                final int[] expected = changedSource.clone();
+                StackBlurReference.blur(expected, width, height, radius);
+                final int[] actual = blurred.clone();
+                stackBlur.blurRegion(changedSource, actual, width, height, radius, left, top, right, bottom);
+                assertChecksum("region blur [" + left + ',' + top + ',' + right + ',' + bottom + ']', width, height, radius,
+                        getChecksum(expected), actual);
+            }
+        });
+    }
+
+    @Test
+    public void scaledBlurMatchesGolden() {
+        final ScaledBlur scaledBlur = new ScaledBlur(stackBlur);
+        for (int sizeIndex = 0; sizeIndex < SCALED_SIZES.length; sizeIndex++) {
+            final int width = SCALED_SIZES[sizeIndex][0];
+            final int height = SCALED_SIZES[sizeIndex][1];
+            final int[] source = BlurBenchmark.createImage(width, height);
+            for (int radiusIndex = 0; radiusIndex < SCALED_RADII.length; radiusIndex++) {
+                final int[] pixels = source.clone();
+                scaledBlur.blur(pixels, width, height, SCALED_RADII[radiusIndex]);
+                assertChecksum("scaled blur", width, height, SCALED_RADII[radiusIndex], SCALED_GOLDEN_CHECKSUMS[sizeIndex][radiusIndex], pixels);
+            }
+        }
+    }
+
+    // stripes of interrupted parallel blur should not write into buffers of next blur
+    @Test
+    public void parallelStackBlurAfterInterruptionMatchesReference() throws InterruptedException {
+        final int width = SIZES[SIZES.length - 1][0];
+        final int height = SIZES[SIZES.length - 1][1];
+        final int radius = RADII[RADII.length - 2];
+        final int[] source = BlurBenchmark.createImage(width, height);
+        final int[] expected = source.clone();
+        StackBlurReference.blur(expected, width, height, radius);
+        for (int i = 0; i < INTERRUPTED_BLURS_COUNT; i++) {
+            Thread.currentThread().interrupt();
+            try {
+                stackBlur.blur(source.clone(), width, height, radius, executor, PARALLEL_STRIPES);
+            } catch (final InterruptedException exception) {
+                // expected
+            }
+            Thread.interrupted();
+            final int[] pixels = source.clone();
+            stackBlur.blur(pixels, width, height, radius, executor, PARALLEL_STRIPES);
+            assertArrayEquals(expected, pixels);
+        }
+    }
+
+    private interface GoldenCase {
+
+        void check(int[] source, int width, int height, int radius, long golden) throws InterruptedException;
+
+    }
+
+}